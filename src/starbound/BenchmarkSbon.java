@@ -0,0 +1,80 @@
+package starbound;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import starbound.io.SbonWriter;
+import starbound.io.StarboundFiles;
+import starbound.io.VersionedJson;
+import steam.SteamUtils;
+import util.TablePrinter;
+
+/**
+ * Measures how fast SBVJ01 files, such as .player files, are decoded and encoded again, and checks
+ * that encoding gives back the exact bytes of the file. Uses the given files, or the player files
+ * of the Starbound installation.
+ */
+public class BenchmarkSbon {
+
+  private static final int ITERATIONS = 200;
+  // Bytes before the versioned json in a SBVJ01 file
+  private static final int MAGIC_LENGTH = 6;
+
+  public static void main(String[] args) throws Exception {
+    List<File> files = new ArrayList<>();
+    if (args.length > 0) {
+      for (String arg : args) {
+        files.add(new File(arg));
+      }
+    } else {
+      files.addAll(new StarboundFiles(SteamUtils.findStarboundInstallDir()).findPlayerFiles());
+    }
+
+    TablePrinter table = new TablePrinter("file", "KB", "decode MB/s", "encode MB/s", "identical");
+    SbonWriter out = new SbonWriter();
+    for (File file : files) {
+      byte[] bytes = Files.readAllBytes(file.toPath());
+      ByteBuffer payload =
+          ByteBuffer.wrap(bytes, MAGIC_LENGTH, bytes.length - MAGIC_LENGTH).slice();
+      VersionedJson json = VersionedJson.readVersionedJson(payload.duplicate());
+
+      // once untimed so the code is compiled before measuring
+      decode(payload, ITERATIONS / 10);
+      encode(json, out, ITERATIONS / 10);
+      long decodeNanos = decode(payload, ITERATIONS);
+      long encodeNanos = encode(json, out, ITERATIONS);
+
+      boolean identical = Arrays.equals(
+          out.toByteArray(), Arrays.copyOfRange(bytes, MAGIC_LENGTH, bytes.length));
+      table.addRow(file.getName(), payload.remaining() / 1024,
+          throughput(payload.remaining(), decodeNanos), throughput(out.size(), encodeNanos),
+          identical);
+    }
+    table.print();
+  }
+
+  private static long decode(ByteBuffer payload, int iterations) {
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      VersionedJson.readVersionedJson(payload.duplicate());
+    }
+    return (System.nanoTime() - start) / iterations;
+  }
+
+  private static long encode(VersionedJson json, SbonWriter out, int iterations) {
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      out.reset();
+      json.write(out);
+    }
+    return (System.nanoTime() - start) / iterations;
+  }
+
+  private static String throughput(int bytes, long nanos) {
+    return String.format("%.1f", bytes * 1000.0 / Math.max(nanos, 1));
+  }
+}
@@ -1,7 +1,5 @@
 package starbound;
 
-import java.nio.charset.Charset;
-
 import starbound.io.SBAsset6;
 import starbound.io.StarboundFiles;
 import starbound.io.SBAsset6.AssetNode;
@@ -22,9 +20,7 @@ public class DumpActiveItemInfo {
     t.setSortColumns(1);
     JsonParser parser = new JsonParser();
     for (AssetNode node : assets.getRootDirectory().findFiles(".activeitem")) {
-      byte[] weaponActiveItemBytes = assets.get(node);
-      JsonObject e = parser.parse(new String(weaponActiveItemBytes, Charset.forName("utf-8")))
-          .getAsJsonObject();
+      JsonObject e = parser.parse(SBAsset6.toText(assets.get(node))).getAsJsonObject();
       t.addRow(e.get("itemName"), e.get("tooltipKind"), e.get("category"));
     }
     t.print();
@@ -16,6 +16,8 @@ import starbound.model.Weapons;
 import starbound.model.Weapons.ValueOrRange;
 import starbound.model.Weapons.WeaponConfig;
 import starbound.model.World;
+import starbound.model.WorldSummary;
+import starbound.model.WorldSummaryCache;
 import steam.SteamUtils;
 import util.TablePrinter;
 
@@ -25,13 +27,13 @@ public class DumpItems {
     
     StarboundFiles starboundFiles = new StarboundFiles(SteamUtils.findStarboundInstallDir());
 
-    List<World> worlds = new ArrayList<>();
+    WorldSummaryCache worldSummaries = WorldSummaryCache.load(WorldSummaryCache.DEFAULT_FILE);
     List<File> worldFiles = starboundFiles.findWorldFiles();
     worldFiles.add(starboundFiles.findShipworldFiles().values().iterator().next());
-    for (int i = 0; i < worldFiles.size(); i++) {
-      World world = World.load(worldFiles.get(i));
-      worlds.add(world);
-      System.out.printf("% 2d: %s\n", i, world.getName());
+    List<WorldSummary> worlds = worldSummaries.get(worldFiles);
+    worldSummaries.save();
+    for (int i = 0; i < worlds.size(); i++) {
+      System.out.printf("% 2d: %s\n", i, worlds.get(i).name);
     }
     System.out.printf("% 2d: Player Inventory\n", worldFiles.size());
 
@@ -49,7 +51,7 @@ public class DumpItems {
         }
       }
     } else {
-      World world = worlds.get(worldIndex);
+      World world = World.load(worlds.get(worldIndex).file);
       
       for (VersionedJson entity : world.getEntities()) {
         if (Entities.isOwnedChest(entity)) {
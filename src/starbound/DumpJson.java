@@ -0,0 +1,59 @@
+package starbound;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.stream.JsonWriter;
+
+import starbound.io.Sbon;
+import starbound.io.SbonJsonExporter;
+import starbound.io.VersionedJson;
+import starbound.model.World;
+
+/**
+ * Writes a .world file's entities, or a SBVJ01 file such as a .player file, as JSON. The JSON is
+ * streamed as the file is read, so large files don't need to fit in memory as JSON.
+ *
+ * <p>Usage: DumpJson file [output file]. Without an output file, the JSON is printed.
+ */
+public class DumpJson {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.out.println("no .world or SBVJ01 file specified");
+      return;
+    }
+    File file = new File(args[0]);
+    OutputStream stream = args.length > 1 ? new FileOutputStream(args[1]) : System.out;
+    Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    JsonWriter out = SbonJsonExporter.createJsonWriter(writer);
+
+    if (file.getName().endsWith(".world")) {
+      // opened rather than loaded, so only one region is in memory at a time
+      try (World world = World.open(file)) {
+        out.beginArray();
+        for (ByteBuffer entities : world.getEntityBytes()) {
+          int length = (int)Sbon.readVarint(entities);
+          for (int i = 0; i < length; i++) {
+            SbonJsonExporter.exportVersionedJson(entities, out);
+          }
+        }
+        out.endArray();
+      }
+    } else {
+      SbonJsonExporter.exportVersionedJson(VersionedJson.mapSbvj01Bytes(file), out);
+    }
+
+    writer.write(System.lineSeparator());
+    writer.flush();
+    if (stream != System.out) {
+      stream.close();
+    }
+  }
+}
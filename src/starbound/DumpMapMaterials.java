@@ -1,24 +1,23 @@
 package starbound;
 
 import java.io.File;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import starbound.io.SBAsset6;
 import starbound.io.SBAsset6.AssetNode;
+import starbound.model.Deposits.Deposit;
+import starbound.model.LiquidStatistics;
+import starbound.model.Liquids;
 import starbound.model.World;
 import starbound.model.World.WorldTiles;
+import starbound.model.WorldStatistics;
+import starbound.model.WorldStatistics.Histogram;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import static java.util.Comparator.comparing;
-
 public class DumpMapMaterials {
 
   public static void main(String[] args) throws Exception {
@@ -31,28 +30,41 @@ public class DumpMapMaterials {
     JsonParser parser = new JsonParser();
     List<AssetNode> materialFiles = assets.getDirectory("tiles/materials").listFiles(".material");
     for (AssetNode matterialFile : materialFiles) {
-      byte[] materialBytes = assets.get(matterialFile);
-      JsonObject e = parser.parse(new String(materialBytes, Charset.forName("utf-8"))).getAsJsonObject();
+      JsonObject e = parser.parse(SBAsset6.toText(assets.get(matterialFile))).getAsJsonObject();
       int id = e.get("materialId").getAsInt();
       String name = e.get("materialName").getAsString();
       materialNames.put(id, name);
     }
 
-    Map<Integer, Integer> count = new HashMap<>();
+    WorldStatistics statistics = WorldStatistics.compute(world.getTileForgroundMaterial());
+
+    for (int materialId : statistics.materials.getIds()) {
+      System.out.printf("% 5d: % 12d %s\n",
+          materialId, statistics.materials.get(materialId), materialNames.get(materialId));
+    }
+
+    print("Biomes", statistics.biomes);
+    print("Liquids", statistics.liquids);
+    print("Dungeons", statistics.dungeons);
+
+    Liquids liquids = Liquids.create(assets);
     WorldTiles tiles = world.getTileForgroundMaterial();
-    for (int x = 0; x < tiles.getWidth(); x++) {
-      for (int y = 0; y < tiles.getHeight(); y++) {
-        int materialId = tiles.getTile(x, y);
-        count.put(materialId, count.getOrDefault(materialId, 0) + 1);
-      }
+    LiquidStatistics liquidStatistics = tiles.getLiquidStatistics();
+    System.out.println();
+    System.out.println("Liquid volumes:");
+    for (int liquidId : liquidStatistics.getLiquidIds()) {
+      List<Deposit> bodies = LiquidStatistics.findBodies(tiles, liquidId);
+      System.out.printf("% 5d: % 12.1f in % 8d tiles, % 6d bodies, largest % 8d tiles %s\n",
+          liquidId, liquidStatistics.getVolume(liquidId), liquidStatistics.getTileCount(liquidId),
+          bodies.size(), bodies.get(0).area, liquids.get(liquidId));
     }
-    
-    List<Entry<Integer, Integer>> entries = new ArrayList<>(count.entrySet());
-    entries.sort(comparing(Entry::getValue));
-    Collections.reverse(entries);
-    
-    for (Entry<Integer, Integer> e : entries) {
-      System.out.printf("% 5d: % 12d %s\n", e.getKey(), e.getValue(), materialNames.get(e.getKey()));
+  }
+
+  private static void print(String title, Histogram histogram) {
+    System.out.println();
+    System.out.println(title + ":");
+    for (int id : histogram.getIds()) {
+      System.out.printf("% 5d: % 12d\n", id, histogram.get(id));
     }
   }
   
@@ -1,12 +1,14 @@
 package starbound;
 
+import java.util.HashMap;
 import java.util.Map;
 
-import starbound.io.Sbon;
+import starbound.io.SbonReader;
 import starbound.io.StarboundFiles;
-import starbound.model.Player;
-import starbound.model.World;
+import starbound.io.VersionedJson;
 import starbound.model.WorldId;
+import starbound.model.WorldSummary;
+import starbound.model.WorldSummaryCache;
 import steam.SteamUtils;
 import util.TablePrinter;
 
@@ -16,26 +18,75 @@ public class DumpPlayerQuests {
 
     StarboundFiles starboundFiles = new StarboundFiles(SteamUtils.findStarboundInstallDir());
 
-    Map<WorldId, World> worlds = World.loadWorlds(starboundFiles);
+    WorldSummaryCache worldSummaries = WorldSummaryCache.load(WorldSummaryCache.DEFAULT_FILE);
+    Map<WorldId, WorldSummary> worlds = worldSummaries.getWorlds(starboundFiles);
+    worldSummaries.save();
 
-    Player player = Player.loadPlayers(starboundFiles).get(0);
-
-    Sbon quests = player.playerData.getByPath("quests/quests");
+    // Quest logs get large, so stream through them rather than decoding the player
+    SbonReader reader = VersionedJson.streamSbvj01(starboundFiles.findPlayerFiles().get(0));
 
     TablePrinter table = new TablePrinter("title", "worldId", "world name");
     table.setSortColumns(2);
 
-    for (Sbon quest : quests.asSbonMap().values()) {
-      quest = quest.getByKey("content");
-      if (quest.getByKey("state").asString().equals("Active")) {
-        String title = quest.getByKey("title").asString();
-        String worldId = quest.getByKey("worldId").asString();
-        World w = worlds.get(WorldId.fromId(worldId));
-        table.addRow(title, worldId, w == null ? "" : w.getName());
+    reader.beginMap();
+    if (findKey(reader, "quests")) {
+      reader.beginMap();
+      if (findKey(reader, "quests")) {
+        reader.beginMap();
+        while (reader.hasNext()) {
+          reader.nextName();
+          Map<String, String> quest = readQuest(reader);
+          if ("Active".equals(quest.get("state"))) {
+            String worldId = quest.get("worldId");
+            WorldSummary w = worlds.get(WorldId.fromId(worldId));
+            table.addRow(quest.get("title"), worldId, w == null ? "" : w.name);
+          }
+        }
+        reader.endMap();
       }
     }
     
     table.print();
   }
+
+  /**
+   * Skips map entries up to the one with the key, leaving the reader at its value. Returns false
+   * if there is no such key.
+   */
+  private static boolean findKey(SbonReader reader, String key) {
+    while (reader.hasNext()) {
+      if (reader.nextName().equals(key)) {
+        return true;
+      }
+      reader.skipValue();
+    }
+    return false;
+  }
+
+  /**
+   * Reads the string fields of a quest's content, skipping everything else.
+   */
+  private static Map<String, String> readQuest(SbonReader reader) {
+    Map<String, String> fields = new HashMap<>();
+    reader.beginMap();
+    while (reader.hasNext()) {
+      if (!reader.nextName().equals("content")) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginMap();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (reader.nextToken() == SbonReader.Token.STRING) {
+          fields.put(name, reader.readString());
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endMap();
+    }
+    reader.endMap();
+    return fields;
+  }
   
 }
@@ -3,8 +3,6 @@ package starbound;
 import java.awt.geom.Point2D;
 import java.io.File;
 
-import starbound.io.Sbon;
-import starbound.io.VersionedJson;
 import starbound.model.Player;
 
 public class GetSavedPlayerLocation {
@@ -15,8 +13,7 @@ public class GetSavedPlayerLocation {
       return;
     }
     
-    Sbon data = VersionedJson.readSbvj01(new File(args[0])).data;
-    Point2D.Float location = Player.getSavedLocationInCurrentWorld(data);
+    Point2D.Float location = Player.readSavedLocationInCurrentWorld(new File(args[0]));
     
     System.out.println(location);
   }
@@ -0,0 +1,77 @@
+package starbound;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import starbound.io.Sbon;
+import starbound.io.SbonQuery;
+import starbound.io.SbonQuery.Row;
+import starbound.io.StarboundFiles;
+import starbound.io.VersionedJson;
+import starbound.model.World;
+import steam.SteamUtils;
+import util.TablePrinter;
+
+/**
+ * Runs a {@link SbonQuery} over the entities of .world files and over SBVJ01 files such as
+ * .player files, and prints the matches. Without files, all worlds of the Starbound installation
+ * are queried.
+ *
+ * <p>Usage: QuerySaves "select name, tilePosition from ObjectEntity where name ~ chest" [files]
+ */
+public class QuerySaves {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.out.println("no query specified");
+      return;
+    }
+    SbonQuery query = SbonQuery.compile(args[0]);
+
+    List<File> files = new ArrayList<>();
+    for (String arg : Arrays.asList(args).subList(1, args.length)) {
+      files.add(new File(arg));
+    }
+    if (files.isEmpty()) {
+      files.addAll(new StarboundFiles(SteamUtils.findStarboundInstallDir()).findWorldFiles());
+    }
+
+    List<String> columns = new ArrayList<>(Arrays.asList("file", "identifier"));
+    columns.addAll(query.getColumns());
+    TablePrinter table = new TablePrinter(columns.toArray(new String[0]));
+
+    for (File file : files) {
+      List<VersionedJson> jsons;
+      if (file.getName().endsWith(".world")) {
+        jsons = World.load(file).getEntities();
+      } else {
+        jsons = Collections.singletonList(VersionedJson.readSbvj01(file));
+      }
+
+      for (Row row : query.run(jsons)) {
+        Object[] cells = new Object[columns.size()];
+        cells[0] = file.getName();
+        cells[1] = row.source.identifier;
+        for (int i = 2; i < cells.length; i++) {
+          cells[i] = format(row.get(i - 2));
+        }
+        table.addRow(cells);
+      }
+    }
+    table.print();
+  }
+
+  private static String format(List<Sbon> values) {
+    StringBuilder text = new StringBuilder();
+    for (Sbon value : values) {
+      if (text.length() > 0) {
+        text.append(", ");
+      }
+      text.append(value);
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,131 @@
+package starbound.io;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map of decoded Sbon, stored as arrays of keys and values in the order they were
+ * read. Small maps, which most Sbon maps are, are searched linearly. Larger maps also get an
+ * open addressing table of indexes into the arrays, which is still much smaller than the entry
+ * objects of a HashMap.
+ */
+class ArrayMap extends AbstractMap<String, Object> {
+
+  private static final int LINEAR_SEARCH_SIZE = 8;
+
+  private final String[] keys;
+  private final Object[] values;
+  private final int size;
+  // For larger maps, index + 1 of the entry in each slot, 0 for empty slots
+  private final int[] table;
+
+  /**
+   * Takes ownership of the arrays. If a key occurs more than once, the entry stays where the key
+   * first occurred and gets the last value, as if the entries were put in a LinkedHashMap.
+   */
+  ArrayMap(String[] keys, Object[] values, int length) {
+    this.keys = keys;
+    this.values = values;
+    this.table = length > LINEAR_SEARCH_SIZE
+        ? new int[Integer.highestOneBit(length * 2 - 1) << 1]
+        : null;
+
+    int size = 0;
+    for (int i = 0; i < length; i++) {
+      String key = keys[i];
+      int existing = indexOf(key, size);
+      if (existing >= 0) {
+        values[existing] = values[i];
+        continue;
+      }
+      keys[size] = key;
+      values[size] = values[i];
+      if (table != null) {
+        int slot = firstSlot(key);
+        while (table[slot] != 0) {
+          slot = (slot + 1) & (table.length - 1);
+        }
+        table[slot] = size + 1;
+      }
+      size++;
+    }
+    this.size = size;
+  }
+
+  private int firstSlot(String key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (table.length - 1);
+  }
+
+  private int indexOf(Object key, int size) {
+    if (table == null) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i].equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    for (int slot = firstSlot((String) key); table[slot] != 0;
+        slot = (slot + 1) & (table.length - 1)) {
+      int index = table[slot] - 1;
+      if (keys[index].equals(key)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    int index = indexOf(key, size);
+    return index < 0 ? null : values[index];
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && indexOf(key, size) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        return new Iterator<Entry<String, Object>>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return next < size;
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            int index = next++;
+            return new SimpleImmutableEntry<>(keys[index], values[index]);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+}
@@ -0,0 +1,104 @@
+package starbound.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The index of an assets package, persisted between runs so that the index of the package doesn't
+ * have to be parsed on every start. The cache is reused as long as the package has the same size
+ * and modification time.
+ *
+ * <p>After a header, the cache has the tables of the {@link AssetTrie} of the package. The tables
+ * are read into memory as they are and the trie reads them from there, so nothing is built when
+ * the cache is used. The cache file isn't mapped, as a mapped file couldn't be written again on
+ * Windows until the mapping is collected, and the cache is written again whenever it is stale or
+ * invalid.
+ */
+class AssetIndexCache {
+
+  private static final int MAGIC = 'S' << 24 | 'B' << 16 | 'A' << 8 | 'I';
+  private static final int VERSION = 2;
+  private static final int HEADER_LENGTH = 32;
+
+  /**
+   * Returns the assets with the index of the cache, or null if the cache is missing, was written
+   * for another package or can't be read.
+   */
+  static SBAsset6 read(File cacheFile, long size, long lastModified, ByteBuffer bytes) {
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      readFully(channel, header);
+      if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC
+          || header.getInt() != VERSION || header.getLong() != size
+          || header.getLong() != lastModified) {
+        return null;
+      }
+      int nodeCount = header.getInt();
+      int namesLength = header.getInt();
+      long length = AssetTrie.getLength(nodeCount, namesLength);
+      if (length > Integer.MAX_VALUE || channel.size() != HEADER_LENGTH + length) {
+        throw new IOException("Invalid length");
+      }
+
+      ByteBuffer tables = ByteBuffer.allocate((int) length);
+      readFully(channel, tables);
+      if (tables.remaining() != length) {
+        throw new IOException("Truncated");
+      }
+      return new SBAsset6(bytes, AssetTrie.read(tables, nodeCount, namesLength, bytes.capacity()));
+    } catch (IOException e) {
+      System.out.println("Could not read asset index cache " + cacheFile + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads from the channel until the buffer is full or the file ends, and flips the buffer.
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+  }
+
+  /**
+   * Writes the index of the assets to the cache file. The cache is written to a temporary file
+   * next to it first and then moved over it, so that a run that is stopped while writing doesn't
+   * leave a partial cache behind.
+   */
+  static void write(File cacheFile, long size, long lastModified, SBAsset6 assets)
+      throws IOException {
+    AssetTrie trie = assets.getIndex();
+    File tempFile = new File(cacheFile.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        out.writeInt(trie.getNodeCount());
+        out.writeInt(trie.getNamesLength());
+        trie.write(out);
+      }
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+}
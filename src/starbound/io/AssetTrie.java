@@ -0,0 +1,391 @@
+package starbound.io;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The paths of the assets in a package, as a trie of path segments. Every node is a number, and
+ * its name, children and asset are looked up in tables indexed by it:
+ *
+ * <ul>
+ * <li>Names are UTF-8 in one shared buffer, in which each distinct segment is stored once.
+ * <li>Nodes are numbered breadth first, so the children of a node are a range of numbers that
+ *     starts where the children of the node before it end. Children are sorted by the bytes of
+ *     their names, so a child is found by binary search.
+ * <li>Nodes that are assets have the offset and length of the asset in the package. Other nodes
+ *     have a length of -1.
+ * </ul>
+ *
+ * <p>The tables are buffers, so that a trie can be used straight from the bytes of a cache file.
+ * Nothing is changed after construction, so a trie can be read from several threads at once.
+ */
+class AssetTrie {
+
+  static final int ROOT = 0;
+  static final int NOT_FOUND = -1;
+
+  private static final byte SEPARATOR = '/';
+  // The number of int tables, each with an int per node, except that the child starts have one
+  // more for the end of the children of the last node
+  private static final int TABLE_COUNT = 5;
+
+  private final int nodeCount;
+  private final ByteBuffer names;
+  private final IntBuffer nameOffsets;
+  private final IntBuffer nameLengths;
+  private final IntBuffer childStarts;
+  private final IntBuffer assetOffsets;
+  private final IntBuffer assetLengths;
+
+  private AssetTrie(int nodeCount, ByteBuffer names, IntBuffer nameOffsets,
+      IntBuffer nameLengths, IntBuffer childStarts, IntBuffer assetOffsets,
+      IntBuffer assetLengths) {
+    this.nodeCount = nodeCount;
+    this.names = names;
+    this.nameOffsets = nameOffsets;
+    this.nameLengths = nameLengths;
+    this.childStarts = childStarts;
+    this.assetOffsets = assetOffsets;
+    this.assetLengths = assetLengths;
+  }
+
+  /**
+   * A node while the trie is built.
+   */
+  private static class BuildNode {
+    final byte[] name;
+    final Map<String, BuildNode> children = new HashMap<>();
+    int assetOffset;
+    int assetLength = -1;
+
+    BuildNode(byte[] name) {
+      this.name = name;
+    }
+  }
+
+  private static final Comparator<BuildNode> BY_NAME = new Comparator<BuildNode>() {
+    @Override
+    public int compare(BuildNode a, BuildNode b) {
+      return compareNames(a.name, 0, a.name.length, b.name, 0, b.name.length);
+    }
+  };
+
+  /**
+   * Collects the assets of a package and builds the trie of their paths.
+   */
+  static class Builder {
+
+    private final BuildNode root = new BuildNode(new byte[0]);
+    private final Map<String, byte[]> segments = new HashMap<>();
+
+    /**
+     * Adds an asset. A later asset with the same path replaces an earlier one.
+     */
+    void add(String path, int offset, int length) {
+      BuildNode node = root;
+      for (String segment : path.split("/")) {
+        if (segment.isEmpty()) {
+          continue;
+        }
+        BuildNode child = node.children.get(segment);
+        if (child == null) {
+          child = new BuildNode(intern(segment));
+          node.children.put(segment, child);
+        }
+        node = child;
+      }
+      node.assetOffset = offset;
+      node.assetLength = length;
+    }
+
+    private byte[] intern(String segment) {
+      byte[] name = segments.get(segment);
+      if (name == null) {
+        name = segment.getBytes(Sbon.UTF_8);
+        segments.put(segment, name);
+      }
+      return name;
+    }
+
+    AssetTrie build() {
+      List<BuildNode> nodes = new ArrayList<>();
+      nodes.add(root);
+      int[] childStarts = new int[16];
+      for (int i = 0; i < nodes.size(); i++) {
+        if (i == childStarts.length) {
+          childStarts = Arrays.copyOf(childStarts, childStarts.length * 2);
+        }
+        childStarts[i] = nodes.size();
+        List<BuildNode> children = new ArrayList<>(nodes.get(i).children.values());
+        Collections.sort(children, BY_NAME);
+        nodes.addAll(children);
+      }
+      int nodeCount = nodes.size();
+      childStarts = Arrays.copyOf(childStarts, nodeCount + 1);
+      childStarts[nodeCount] = nodeCount;
+
+      Map<byte[], Integer> nameOffsetsByName = new HashMap<>();
+      ByteBuffer names = ByteBuffer.allocate(namesLength());
+      int[] nameOffsets = new int[nodeCount];
+      int[] nameLengths = new int[nodeCount];
+      int[] assetOffsets = new int[nodeCount];
+      int[] assetLengths = new int[nodeCount];
+      for (int i = 0; i < nodeCount; i++) {
+        BuildNode node = nodes.get(i);
+        // the interned names are the same arrays, so they are looked up by identity
+        Integer nameOffset = nameOffsetsByName.get(node.name);
+        if (nameOffset == null) {
+          nameOffset = names.position();
+          names.put(node.name);
+          nameOffsetsByName.put(node.name, nameOffset);
+        }
+        nameOffsets[i] = nameOffset;
+        nameLengths[i] = node.name.length;
+        assetOffsets[i] = node.assetOffset;
+        assetLengths[i] = node.assetLength;
+      }
+      names.clear();
+
+      return new AssetTrie(nodeCount, names, IntBuffer.wrap(nameOffsets),
+          IntBuffer.wrap(nameLengths), IntBuffer.wrap(childStarts), IntBuffer.wrap(assetOffsets),
+          IntBuffer.wrap(assetLengths));
+    }
+
+    private int namesLength() {
+      int length = 0;
+      for (byte[] name : segments.values()) {
+        length += name.length;
+      }
+      return length;
+    }
+  }
+
+  /**
+   * Returns the number of bytes that {@link #write(DataOutputStream)} writes for a trie of the
+   * size.
+   */
+  static long getLength(int nodeCount, int namesLength) {
+    return 4L * (TABLE_COUNT * (long) nodeCount + 1) + namesLength;
+  }
+
+  /**
+   * Returns a trie that reads its tables straight from the buffer, which holds what
+   * {@link #write(DataOutputStream)} wrote from its position on. Throws IOException if the
+   * tables are not consistent or point outside of a package of the length.
+   */
+  static AssetTrie read(ByteBuffer bytes, int nodeCount, int namesLength, int packageLength)
+      throws IOException {
+    if (nodeCount < 1 || namesLength < 0
+        || bytes.remaining() != getLength(nodeCount, namesLength)) {
+      throw new IOException("Invalid trie size");
+    }
+    IntBuffer nameOffsets = sliceInts(bytes, nodeCount);
+    IntBuffer nameLengths = sliceInts(bytes, nodeCount);
+    IntBuffer childStarts = sliceInts(bytes, nodeCount + 1);
+    IntBuffer assetOffsets = sliceInts(bytes, nodeCount);
+    IntBuffer assetLengths = sliceInts(bytes, nodeCount);
+    ByteBuffer names = bytes.slice();
+
+    // checked once here, so that lookups never go outside of the tables
+    if (childStarts.get(ROOT) != ROOT + 1 || childStarts.get(nodeCount) != nodeCount) {
+      throw new IOException("Invalid children");
+    }
+    for (int node = 0; node < nodeCount; node++) {
+      int nameOffset = nameOffsets.get(node);
+      int nameLength = nameLengths.get(node);
+      int childStart = childStarts.get(node);
+      int assetOffset = assetOffsets.get(node);
+      int assetLength = assetLengths.get(node);
+      if (nameOffset < 0 || nameLength < 0 || nameOffset > namesLength - nameLength) {
+        throw new IOException("Invalid name of node " + node);
+      }
+      if (childStart <= node || childStart > childStarts.get(node + 1)) {
+        throw new IOException("Invalid children of node " + node);
+      }
+      if (assetLength < -1 || (assetLength >= 0
+          && (assetOffset < 0 || assetOffset > packageLength - assetLength))) {
+        throw new IOException("Invalid asset of node " + node);
+      }
+    }
+    return new AssetTrie(nodeCount, names, nameOffsets, nameLengths, childStarts, assetOffsets,
+        assetLengths);
+  }
+
+  private static IntBuffer sliceInts(ByteBuffer bytes, int count) {
+    ByteBuffer slice = bytes.slice();
+    slice.limit(count * 4);
+    bytes.position(bytes.position() + count * 4);
+    return slice.asIntBuffer();
+  }
+
+  /**
+   * Writes the tables, in the order that {@link #read(ByteBuffer, int, int, int)} reads them.
+   */
+  void write(DataOutputStream out) throws IOException {
+    writeInts(out, nameOffsets, nodeCount);
+    writeInts(out, nameLengths, nodeCount);
+    writeInts(out, childStarts, nodeCount + 1);
+    writeInts(out, assetOffsets, nodeCount);
+    writeInts(out, assetLengths, nodeCount);
+    for (int i = 0; i < names.limit(); i++) {
+      out.write(names.get(i));
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, IntBuffer ints, int count)
+      throws IOException {
+    for (int i = 0; i < count; i++) {
+      out.writeInt(ints.get(i));
+    }
+  }
+
+  int getNodeCount() {
+    return nodeCount;
+  }
+
+  int getNamesLength() {
+    return names.limit();
+  }
+
+  /**
+   * Returns the node at the path below the node, or NOT_FOUND. Segments of the path are
+   * separated by slashes, and empty segments, such as that before a leading slash, are ignored.
+   */
+  int find(int node, String path) {
+    byte[] encoded = path.getBytes(Sbon.UTF_8);
+    int start = 0;
+    while (start < encoded.length && node != NOT_FOUND) {
+      int end = start;
+      while (end < encoded.length && encoded[end] != SEPARATOR) {
+        end++;
+      }
+      if (end > start) {
+        node = findChild(node, encoded, start, end - start);
+      }
+      start = end + 1;
+    }
+    return node;
+  }
+
+  private int findChild(int node, byte[] name, int offset, int length) {
+    int low = childStarts.get(node);
+    int high = childStarts.get(node + 1) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = compareName(mid, name, offset, length);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  private int compareName(int node, byte[] name, int offset, int length) {
+    int nameOffset = nameOffsets.get(node);
+    int nameLength = nameLengths.get(node);
+    int common = Math.min(nameLength, length);
+    for (int i = 0; i < common; i++) {
+      int comparison = (names.get(nameOffset + i) & 0xFF) - (name[offset + i] & 0xFF);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return nameLength - length;
+  }
+
+  private static int compareNames(
+      byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+    int common = Math.min(aLength, bLength);
+    for (int i = 0; i < common; i++) {
+      int comparison = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return aLength - bLength;
+  }
+
+  int getChildStart(int node) {
+    return childStarts.get(node);
+  }
+
+  int getChildEnd(int node) {
+    return childStarts.get(node + 1);
+  }
+
+  boolean hasChildren(int node) {
+    return childStarts.get(node) < childStarts.get(node + 1);
+  }
+
+  boolean isAsset(int node) {
+    return assetLengths.get(node) >= 0;
+  }
+
+  int getAssetOffset(int node) {
+    return assetOffsets.get(node);
+  }
+
+  int getAssetLength(int node) {
+    return assetLengths.get(node);
+  }
+
+  String getName(int node) {
+    // with absolute reads, as moving a shared mapped buffer wouldn't be safe between threads
+    int offset = nameOffsets.get(node);
+    byte[] name = new byte[nameLengths.get(node)];
+    for (int i = 0; i < name.length; i++) {
+      name[i] = names.get(offset + i);
+    }
+    return new String(name, Sbon.UTF_8);
+  }
+
+  /**
+   * Returns whether the name of the node ends in the UTF-8 suffix, without decoding the name.
+   */
+  boolean nameEndsWith(int node, byte[] suffix) {
+    int nameLength = nameLengths.get(node);
+    if (nameLength < suffix.length) {
+      return false;
+    }
+    int start = nameOffsets.get(node) + nameLength - suffix.length;
+    for (int i = 0; i < suffix.length; i++) {
+      if (names.get(start + i) != suffix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the full paths of all assets, each with a leading slash, in the order of the trie.
+   */
+  Set<String> getPaths() {
+    Set<String> paths = new LinkedHashSet<>();
+    addPaths(ROOT, "", paths);
+    return paths;
+  }
+
+  private void addPaths(int node, String path, Set<String> paths) {
+    if (isAsset(node)) {
+      paths.add(path);
+    }
+    for (int child = getChildStart(node); child < getChildEnd(node); child++) {
+      addPaths(child, path + "/" + getName(child), paths);
+    }
+  }
+}
@@ -1,24 +1,51 @@
 package starbound.io;
 
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
-public class BTreeDB5 {
+public class BTreeDB5 implements Closeable {
 
   private static final int HEADER_SIZE = 512;
   private static final short BLOCK_TYPE_FREE = 'F' | 'F' << 8;
   private static final short BLOCK_TYPE_INDEX = 'I' | 'I' << 8;
   private static final short BLOCK_TYPE_LEAF = 'L' | 'L' << 8;
-  
-  public static BTreeDB5 load(File file) throws IOException {
 
+  /**
+   * Reads the whole file into memory.
+   */
+  public static BTreeDB5 load(File file) throws IOException {
     ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
-    
+    return readHeader(data, data, null);
+  }
+
+  /**
+   * Opens the file without reading it into memory. Blocks are read from disk as they are
+   * needed, so looking up a handful of keys only touches the header and the blocks on the path
+   * from the root to those keys. The returned db must be closed.
+   */
+  public static BTreeDB5 open(File file) throws IOException {
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      readFully(channel, header, 0);
+      header.flip();
+      return readHeader(header, null, channel);
+    } catch (IOException | RuntimeException | Error e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static BTreeDB5 readHeader(ByteBuffer data, ByteBuffer fileData, FileChannel channel) {
     String magic = readNullPaddedString(data, 8);
     if (!magic.equals("BTreeDB5")) {
       throw new AssertionError("Not a BTreeDB5: " + magic);
@@ -48,10 +75,10 @@ public class BTreeDB5 {
     }
 
     return new BTreeDB5(
-        data, blockSize, name, keySize, lastBlockIndex + 1, rootBlockIndex, otherRoot,
-        useOtherRootBlockIndex);
+        fileData, channel, blockSize, name, keySize, lastBlockIndex + 1, rootBlockIndex,
+        otherRoot, useOtherRootBlockIndex);
   }
-  
+
   /**
    * Reads a null padded string (null padding is after the string).
    */
@@ -62,14 +89,27 @@ public class BTreeDB5 {
     while (stringLength > 0 && bytes[stringLength] == 0) {
       stringLength--;
     }
-    return new String(bytes, 0, stringLength+1, Charset.forName("utf-8"));
+    return new String(bytes, 0, stringLength+1, Sbon.UTF_8);
   }
-  
+
   private static void skipBytes(ByteBuffer data, int n) {
     data.position(data.position() + n);
   }
 
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of file at " + position);
+      }
+      position += read;
+    }
+  }
+
+  // Exactly one of these is set: the whole file when loaded, or the channel when opened.
   private final ByteBuffer data;
+  private final FileChannel channel;
 
   public final int blockSize;
   public final String name;
@@ -80,11 +120,10 @@ public class BTreeDB5 {
   private final int otherRootBlockIndex;
   private final boolean useOtherRootBlockIndex;
 
-  private final byte[] tempKey;
-  
-  private BTreeDB5(ByteBuffer data, int blockSize, String name, int keySize, int blockCount,
-      int rootBlockIndex, int otherRoot, boolean useOtherRootBlockIndex) {
+  private BTreeDB5(ByteBuffer data, FileChannel channel, int blockSize, String name, int keySize,
+      int blockCount, int rootBlockIndex, int otherRoot, boolean useOtherRootBlockIndex) {
     this.data = data;
+    this.channel = channel;
     this.blockSize = blockSize;
     this.name = name;
     this.keySize = keySize;
@@ -92,8 +131,6 @@ public class BTreeDB5 {
     this.rootBlockIndex = rootBlockIndex;
     this.otherRootBlockIndex = otherRoot;
     this.useOtherRootBlockIndex = useOtherRootBlockIndex;
-    
-    this.tempKey = new byte[keySize]; 
   }
 
   static String toString(byte[] bytes) {
@@ -115,33 +152,30 @@ public class BTreeDB5 {
     getKeys(keys, otherRootBlockIndex);
     return keys;
   }
-  
+
   private void getKeys(List<byte[]> keys, int blockIndex) {
 
-    int offset = getBlockOffset(blockIndex);
-    data.position(offset);
-    short blockType = data.getShort();
-    
+    ByteBuffer block = getBlock(blockIndex);
+    short blockType = block.getShort();
+
     if (blockType == BLOCK_TYPE_INDEX) {
 
-      data.get(); // unknown?
-      int numEntries = data.getInt();
-      int block = data.getInt();
+      block.get(); // unknown?
+      int numEntries = block.getInt();
+      int child = block.getInt();
 
       final int entrySize = keySize + 4;
-      int entryOffset = data.position();
+      int entryOffset = block.position();
 
-      getKeys(keys, block);
+      getKeys(keys, child);
       for (int entryIndex = 0; entryIndex < numEntries; entryIndex++) {
-        data.position(entryOffset + entryIndex * entrySize);
-        data.get(tempKey);
-        block = data.getInt();
-        getKeys(keys, block);
+        child = block.getInt(entryOffset + entryIndex * entrySize + keySize);
+        getKeys(keys, child);
       }
 
     } else if (blockType == BLOCK_TYPE_LEAF) {
-      
-      LeafReader leafReader = new LeafReader();
+
+      LeafReader leafReader = new LeafReader(block);
       int numKeys = leafReader.readInt();
       for (int i = 0; i < numKeys; i++) {
         ByteBuffer key = leafReader.read(keySize);
@@ -149,18 +183,40 @@ public class BTreeDB5 {
         int dataLength = leafReader.readVarint();
         leafReader.skip(dataLength);
       }
-      
+
     } else if (blockType == BLOCK_TYPE_FREE) {
       throw new AssertionError("Should not find free blocks in index");
     } else {
       throw new AssertionError(String.format("Unknown block type: 0x%02X", blockType));
     }
   }
-  
-  private int getBlockOffset(int blockIndex) {
-    return HEADER_SIZE + blockSize * blockIndex;
+
+  private long getBlockOffset(int blockIndex) {
+    return HEADER_SIZE + (long) blockSize * blockIndex;
   }
-  
+
+  /**
+   * Returns a buffer over a single block, positioned at the start of the block. Each call
+   * returns an independent buffer, so lookups can run on several threads at once.
+   */
+  private ByteBuffer getBlock(int blockIndex) {
+    long offset = getBlockOffset(blockIndex);
+    if (data != null) {
+      ByteBuffer block = data.duplicate();
+      block.position((int) offset);
+      block.limit((int) offset + blockSize);
+      return block.slice();
+    }
+    ByteBuffer block = ByteBuffer.allocate(blockSize);
+    try {
+      readFully(channel, block, offset);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read block " + blockIndex, e);
+    }
+    block.flip();
+    return block;
+  }
+
   public ByteBuffer get(long key) {
     byte[] bytes = new byte[keySize];
     for (int i = keySize - 1; i >= 0; i--) {
@@ -169,29 +225,38 @@ public class BTreeDB5 {
     }
     return get(bytes);
   }
-  
+
   public ByteBuffer get(byte[] key) {
+    return get(key, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns at most the first maxLength bytes of the value of the key, or null if there is no
+   * such key. Values can continue over several blocks, and only the blocks up to the returned
+   * bytes are read.
+   */
+  public ByteBuffer get(byte[] key, int maxLength) {
     if (key.length != keySize) {
       throw new AssertionError("Invalid key size");
     }
-    int offset = getBlockOffset(getRootBlockIndex());
+    byte[] tempKey = new byte[keySize];
     int entrySize = keySize + 4;
+    ByteBuffer block = getBlock(getRootBlockIndex());
     short blockType;
     while (true) {
-      data.position(offset);
-      blockType = data.getShort();
+      blockType = block.getShort();
       if (blockType != BLOCK_TYPE_INDEX) {
         break;
       }
       int lo = 0;
-      data.get(); // unknown?
-      int hi = data.getInt();
-      int block = data.getInt();
-      offset += 11; // short + byte + int + int = 11 bytes
+      block.get(); // unknown?
+      int hi = block.getInt();
+      int child = block.getInt();
+      final int entryOffset = 11; // short + byte + int + int = 11 bytes
       while (lo < hi) {
         int mid = (lo + hi) / 2;
-        data.position(offset + entrySize * mid);
-        data.get(tempKey);
+        block.position(entryOffset + entrySize * mid);
+        block.get(tempKey);
         if (compare(key, tempKey) < 0) {
           hi = mid;
         } else {
@@ -199,22 +264,21 @@ public class BTreeDB5 {
         }
       }
       if (lo > 0) {
-        data.position(offset + entrySize * (lo - 1) + keySize);
-        block = data.getInt();
+        child = block.getInt(entryOffset + entrySize * (lo - 1) + keySize);
       }
-      offset = getBlockOffset(block);
+      block = getBlock(child);
     }
     if (blockType != BLOCK_TYPE_LEAF) {
       throw new AssertionError("Did not reach a leaf");
     }
-    
-    LeafReader leafReader = new LeafReader();
+
+    LeafReader leafReader = new LeafReader(block);
     int numKeys = leafReader.readInt();
     for (int i = 0; i < numKeys; i++) {
       ByteBuffer currentKey = leafReader.read(keySize);
       int length = leafReader.readVarint();
       if (compare(key, currentKey.array()) == 0) {
-        return leafReader.read(length);
+        return leafReader.read(Math.min(length, maxLength));
       }
       leafReader.skip(length);
     }
@@ -234,11 +298,24 @@ public class BTreeDB5 {
     }
     return 0;
   }
-  
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
   private class LeafReader {
 
+    // The current leaf block, which is replaced when the data continues in the next block.
+    private ByteBuffer block;
     private int offset = 2;
 
+    LeafReader(ByteBuffer block) {
+      this.block = block;
+    }
+
     private int readVarint() {
       int value = 0;
       for (int i = 0; i < 4; i++) {
@@ -250,50 +327,40 @@ public class BTreeDB5 {
       }
       throw new AssertionError("Varint larger than 4 bytes");
     }
-    
+
     private int readInt() {
       offset += 4;
-      return data.getInt();
+      return block.getInt();
     }
-    
+
     private ByteBuffer read(int length) {
       ByteBuffer bytes = ByteBuffer.allocate(length);
       _read(bytes, length);
       bytes.position(0);
       return bytes;
     }
-    
+
     private ByteBuffer skip(int length) {
       return _read(null, length);
     }
-    
+
     private ByteBuffer _read(ByteBuffer bytes, int length) {
 
       final int blockEnd = blockSize - 4;
       while (true) {
         if (offset + length <= blockEnd) {
-          for (int i = 0; i < length; i++) {
-            byte b = data.get();
-            if (bytes != null) {
-              bytes.put(b);
-            }
-          }
+          copy(bytes, length);
           offset += length;
           break;
         }
         int delta = blockEnd - offset;
-        for (int i = 0; i < delta; i++) {
-          byte b = data.get();
-          if (bytes != null) {
-            bytes.put(b);
-          }
-        }
-        int nextBlock = data.getInt();
+        copy(bytes, delta);
+        int nextBlock = block.getInt();
         if (nextBlock < 0) {
           throw new AssertionError("Could not traverse to next block");
         }
-        data.position(getBlockOffset(nextBlock));
-        if (data.getShort() != BLOCK_TYPE_LEAF) {
+        block = getBlock(nextBlock);
+        if (block.getShort() != BLOCK_TYPE_LEAF) {
           throw new AssertionError("Did not reach a leaf");
         }
         offset = 2;
@@ -302,6 +369,17 @@ public class BTreeDB5 {
 
       return bytes;
     }
+
+    private void copy(ByteBuffer bytes, int length) {
+      if (bytes == null) {
+        block.position(block.position() + length);
+        return;
+      }
+      ByteBuffer src = block.duplicate();
+      src.limit(src.position() + length);
+      bytes.put(src);
+      block.position(block.position() + length);
+    }
   }
 
   private int getRootBlockIndex() {
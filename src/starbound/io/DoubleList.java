@@ -0,0 +1,27 @@
+package starbound.io;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of decoded Sbon doubles, such as a position, stored without boxing. Use
+ * {@link Sbon#asDoubleArray()} to read the values without allocating.
+ */
+class DoubleList extends AbstractList<Object> implements RandomAccess {
+
+  final double[] values;
+
+  DoubleList(double[] values) {
+    this.values = values;
+  }
+
+  @Override
+  public Object get(int index) {
+    return values[index];
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+}
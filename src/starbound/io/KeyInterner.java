@@ -0,0 +1,91 @@
+package starbound.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Shares one String per distinct map key across everything decoded with it, such as all the
+ * entities of a world, which repeat keys like "name" and "parameters" thousands of times. Keys
+ * are looked up by their encoded bytes, so a key that was seen before is not decoded again.
+ * Not thread-safe.
+ */
+public class KeyInterner {
+
+  // Longer keys are rare and unlikely to repeat, so they are decoded without being interned
+  private static final int MAX_INTERNED_LENGTH = 64;
+
+  private String[] strings = new String[32];
+  private byte[][] encoded = new byte[32][];
+  private int[] hashes = new int[32];
+  private int size;
+
+  /**
+   * Returns the key stored in the given bytes of the buffer, without moving the buffer.
+   */
+  String intern(ByteBuffer bytes, int offset, int length) {
+    if (length > MAX_INTERNED_LENGTH) {
+      return Sbon.decodeString(bytes, offset, length);
+    }
+
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + bytes.get(offset + i);
+    }
+
+    int mask = strings.length - 1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (strings[slot] != null) {
+      if (hashes[slot] == hash && equals(encoded[slot], bytes, offset, length)) {
+        return strings[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    byte[] key = new byte[length];
+    for (int i = 0; i < length; i++) {
+      key[i] = bytes.get(offset + i);
+    }
+    String string = new String(key, Sbon.UTF_8);
+    strings[slot] = string;
+    encoded[slot] = key;
+    hashes[slot] = hash;
+    if (++size * 2 > strings.length) {
+      grow();
+    }
+    return string;
+  }
+
+  private static boolean equals(byte[] key, ByteBuffer bytes, int offset, int length) {
+    if (key.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (key[i] != bytes.get(offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void grow() {
+    String[] oldStrings = strings;
+    byte[][] oldEncoded = encoded;
+    int[] oldHashes = hashes;
+    strings = new String[oldStrings.length * 2];
+    encoded = new byte[oldStrings.length * 2][];
+    hashes = new int[oldStrings.length * 2];
+    int mask = strings.length - 1;
+    for (int i = 0; i < oldStrings.length; i++) {
+      if (oldStrings[i] == null) {
+        continue;
+      }
+      int hash = oldHashes[i];
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (strings[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      strings[slot] = oldStrings[i];
+      encoded[slot] = oldEncoded[i];
+      hashes[slot] = hash;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package starbound.io;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of decoded Sbon integers, such as a tile position or a color, stored without
+ * boxing. Use {@link Sbon#asLongArray()} to read the values without allocating.
+ */
+class LongList extends AbstractList<Object> implements RandomAccess {
+
+  final long[] values;
+
+  LongList(long[] values) {
+    this.values = values;
+  }
+
+  @Override
+  public Object get(int index) {
+    return values[index];
+  }
+
+  @Override
+  public int size() {
+    return values.length;
+  }
+}
@@ -5,20 +5,36 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
-import java.nio.charset.Charset;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class SBAsset6 {
 
+  /**
+   * The file in the app directory in which the index of the assets package is cached.
+   */
+  public static final File DEFAULT_INDEX_CACHE_FILE = new File("assets.cache");
+
   public static SBAsset6 load(File file) throws IOException {
+    return load(file, null);
+  }
+
+  /**
+   * Loads the package, taking its index from the cache file if the cache was written for the
+   * package as it is now. Otherwise the index is read from the package and the cache is written
+   * again. The cache file can be null to always read the index from the package.
+   */
+  public static SBAsset6 load(File file, File indexCacheFile) throws IOException {
+
+    // read before mapping, so that a change while loading is noticed the next time
+    long size = file.length();
+    long lastModified = file.lastModified();
 
     FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
     // Starbound's assets file is about 800mb, so it should be safe to use ByteBuffer, which
@@ -28,18 +44,38 @@ public class SBAsset6 {
     }
     ByteBuffer bytes = fileChannel.map(MapMode.READ_ONLY, 0, fileChannel.size());
 
-    String magic = readString(bytes, 8);
+    String magic = Sbon.readString(bytes, 8);
     if (!magic.equals("SBAsset6")) {
       throw new AssertionError("Not an SBAsset6");
     }
 
+    if (indexCacheFile != null) {
+      SBAsset6 cached = AssetIndexCache.read(indexCacheFile, size, lastModified, bytes);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    SBAsset6 assets = new SBAsset6(bytes, readIndex(bytes));
+    if (indexCacheFile != null) {
+      try {
+        AssetIndexCache.write(indexCacheFile, size, lastModified, assets);
+      } catch (IOException e) {
+        System.out.println("Could not write asset index cache " + indexCacheFile + ": " + e);
+      }
+    }
+    return assets;
+  }
+
+  private static AssetTrie readIndex(ByteBuffer bytes) {
+    bytes.position(8);
     long metadataOffset = bytes.getLong();
     if (metadataOffset < 0 || metadataOffset > Integer.MAX_VALUE) {
       throw new AssertionError("Metadata address overflows an int");
     }
 
     bytes.position((int)metadataOffset);
-    String indexMagic = readString(bytes, 5);
+    String indexMagic = Sbon.readString(bytes, 5);
     if (!indexMagic.equals("INDEX")) {
       throw new AssertionError("Invalid index");
     }
@@ -48,70 +84,50 @@ public class SBAsset6 {
     Object metadata = Sbon.readMap(bytes);
     long fileCount = Sbon.readVarint(bytes);
 
-    Map<String, Asset> index = new LinkedHashMap<>();
+    AssetTrie.Builder index = new AssetTrie.Builder();
 
     for (long i = 0; i < fileCount; i++) {
       int pathLength = (bytes.get() & 0xFF);
-      String path = readString(bytes, pathLength);
+      String path = Sbon.readString(bytes, pathLength);
       int offset = (int)bytes.getLong();
       int length = (int)bytes.getLong();
 
-      index.put(path, new Asset(offset, length));
+      index.add(path, offset, length);
     }
-
-    return new SBAsset6(bytes, index);
-  }
-
-  private static String readString(ByteBuffer bytes, int length) {
-    byte[] stringBytes = new byte[length];
-    bytes.get(stringBytes);
-    return new String(stringBytes, Charset.forName("utf-8"));
+    return index.build();
   }
 
-  private static class Asset {
-    final int offset, length;
-
-    public Asset(int offset, int length) {
-      this.offset = offset;
-      this.length = length;
-    }
-  }
-  
-  
+  /**
+   * A file or directory of the package. Nodes are views of the index, which are created when they
+   * are asked for.
+   */
   private abstract static class Node {
+    final AssetTrie trie;
+    final int node;
     final String name;
     
-    Node(String name) {
-      this.name = name;
+    Node(AssetTrie trie, int node) {
+      this.trie = trie;
+      this.node = node;
+      this.name = trie.getName(node);
     }
   }
 
   public static class Directory extends Node {
-    final Map<String, Node> children;
-
-    public Directory(String name) {
-      super(name);
-      this.children = new HashMap<>();
-    }
 
-    private Directory getOrCreateDirectory(String name) {
-      Directory child = (Directory) children.get(name);
-      if (child == null) {
-        child = new Directory(name);
-        children.put(name, child);
-      }
-      return child;
+    Directory(AssetTrie trie, int node) {
+      super(trie, node);
     }
 
     /**
      * Returns the subdirectory in this directory of the given name.
      */
     public Directory getDirectory(String name) {
-      Node child = children.get(name);
-      if (!(child instanceof Directory)) {
+      int child = trie.find(node, name);
+      if (child == AssetTrie.NOT_FOUND || !trie.hasChildren(child)) {
         throw new AssertionError(name + " is not a directory");
       }
-      return (Directory) child;
+      return new Directory(trie, child);
     }
 
     /**
@@ -119,14 +135,7 @@ public class SBAsset6 {
      */
     public List<AssetNode> listFiles(String suffix) {
       List<AssetNode> files = new ArrayList<>();
-      for (Node child : children.values()) {
-        if (child instanceof AssetNode) {
-          AssetNode assetNode = (AssetNode) child;
-          if (suffix == null || assetNode.name.endsWith(suffix)) {
-            files.add(assetNode);
-          }
-        }
-      }
+      addFiles(encode(suffix), files, node);
       return files;
     }
 
@@ -141,7 +150,16 @@ public class SBAsset6 {
      * Returns all files and directories in this directory.
      */
     public Collection<Node> list() {
-      return children.values();
+      List<Node> children = new ArrayList<>();
+      for (int child = trie.getChildStart(node); child < trie.getChildEnd(node); child++) {
+        if (trie.hasChildren(child)) {
+          children.add(new Directory(trie, child));
+        }
+        if (trie.isAsset(child)) {
+          children.add(new AssetNode(trie, child));
+        }
+      }
+      return children;
     }
 
     /**
@@ -150,91 +168,156 @@ public class SBAsset6 {
      */
     public List<AssetNode> findFiles(String suffix) {
       List<AssetNode> files = new ArrayList<>();
-      findFiles(suffix, files, this);
+      findFiles(encode(suffix), files, node);
       return files;
     }
     
-    private static void findFiles(String suffix, List<AssetNode> files, Directory directory) {
-      for (Node child : directory.children.values()) {
-        if (child instanceof AssetNode) {
-          AssetNode assetNodeChild = (AssetNode) child;
-          if (suffix == null || assetNodeChild.name.endsWith(suffix)) {
-            files.add(assetNodeChild);
-          }
+    private void findFiles(byte[] suffix, List<AssetNode> files, int directory) {
+      addFiles(suffix, files, directory);
+
+      for (int child = trie.getChildStart(directory); child < trie.getChildEnd(directory);
+          child++) {
+        if (trie.hasChildren(child)) {
+          findFiles(suffix, files, child);
         }
       }
+    }
 
-      for (Node child : directory.children.values()) {
-        if (child instanceof Directory) {
-          Directory childDirectory = (Directory) child;
-          findFiles(suffix, files, childDirectory);
+    private void addFiles(byte[] suffix, List<AssetNode> files, int directory) {
+      for (int child = trie.getChildStart(directory); child < trie.getChildEnd(directory);
+          child++) {
+        // names are only decoded for the files that are returned
+        if (trie.isAsset(child) && (suffix == null || trie.nameEndsWith(child, suffix))) {
+          files.add(new AssetNode(trie, child));
         }
       }
     }
+
+    private static byte[] encode(String suffix) {
+      return suffix == null ? null : suffix.getBytes(Sbon.UTF_8);
+    }
   }
 
   public static class AssetNode extends Node {
     
-    final Asset asset;
-    
-    public AssetNode(String name, Asset asset) {
-      super(name);
-      this.asset = asset;
+    AssetNode(AssetTrie trie, int node) {
+      super(trie, node);
     }
   }
 
   private final ByteBuffer bytes;
-  private final Map<String, Asset> index;
+  private final AssetTrie trie;
   private final Directory root;
 
-  private SBAsset6(ByteBuffer bytes, Map<String, Asset> index) {
+  SBAsset6(ByteBuffer bytes, AssetTrie trie) {
     this.bytes = bytes;
-    this.index = Collections.unmodifiableMap(index);
-    
+    this.trie = trie;
+    this.root = new Directory(trie, AssetTrie.ROOT);
+  }
 
-    root = new Directory(null);
-    for (String path : index.keySet()) {
-      String[] pathParts = path.split("/");
-      Directory current = root;
-      for (int i = 1; i < pathParts.length - 1; i++) {
-        current = current.getOrCreateDirectory(pathParts[i]);
-      }
-      String assetName = pathParts[pathParts.length - 1];
-      current.children.put(assetName, new AssetNode(assetName, index.get(path)));
-    }
+  AssetTrie getIndex() {
+    return trie;
   }
 
-  public byte[] get(String path) {
-    Asset asset = index.get(path);
-    if (asset == null) {
+  /**
+   * Returns a read-only view of the asset's bytes in the package, without copying them, or null if
+   * there is no asset at the path. Assets can be read from several threads at once.
+   */
+  public ByteBuffer get(String path) {
+    int node = trie.find(AssetTrie.ROOT, path);
+    if (node == AssetTrie.NOT_FOUND || !trie.isAsset(node)) {
       return null;
     }
 
-    return get(asset);
+    return get(node);
   }
   
-  public byte[] get(AssetNode node) {
-    return get(node.asset);
+  public ByteBuffer get(AssetNode node) {
+    return get(node.node);
   }
   
-  private byte[] get(Asset asset) {
-    bytes.position(asset.offset);
-    byte[] assetBytes = new byte[asset.length];
-    bytes.get(assetBytes);
-    return assetBytes;
+  private ByteBuffer get(int node) {
+    int offset = trie.getAssetOffset(node);
+    // a duplicate has its own position and limit, so the shared buffer is never moved
+    ByteBuffer assetBytes = bytes.duplicate();
+    assetBytes.position(offset);
+    assetBytes.limit(offset + trie.getAssetLength(node));
+    return assetBytes.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Decodes an asset that is UTF-8 text, such as a JSON config.
+   */
+  public static String toText(ByteBuffer assetBytes) {
+    return Sbon.UTF_8.decode(assetBytes.duplicate()).toString();
+  }
+
+  /**
+   * Parses one asset into something, or null if there is nothing to take from the asset.
+   */
+  public interface AssetParser<T> {
+    T parse(AssetNode node, ByteBuffer assetBytes);
+  }
+
+  /**
+   * Parses the assets in parallel, and returns what was parsed in the order of the nodes, leaving
+   * out nulls.
+   */
+  public <T> List<T> parseAll(List<AssetNode> nodes, AssetParser<T> parser) {
+    return ForkJoinPool.commonPool().invoke(new ParseTask<>(this, nodes, parser, 0, nodes.size()));
   }
 
+  @SuppressWarnings("serial")
+  private static class ParseTask<T> extends RecursiveTask<List<T>> {
+
+    private static final int ASSETS_PER_TASK = 64;
+
+    private final SBAsset6 assets;
+    private final List<AssetNode> nodes;
+    private final AssetParser<T> parser;
+    private final int start, end;
+
+    ParseTask(
+        SBAsset6 assets, List<AssetNode> nodes, AssetParser<T> parser, int start, int end) {
+      this.assets = assets;
+      this.nodes = nodes;
+      this.parser = parser;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<T> compute() {
+      if (end - start > ASSETS_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        ParseTask<T> top = new ParseTask<>(assets, nodes, parser, mid, end);
+        top.fork();
+        List<T> parsed = new ParseTask<>(assets, nodes, parser, start, mid).compute();
+        parsed.addAll(top.join());
+        return parsed;
+      }
+
+      List<T> parsed = new ArrayList<>();
+      for (int i = start; i < end; i++) {
+        AssetNode node = nodes.get(i);
+        T result = parser.parse(node, assets.get(node));
+        if (result != null) {
+          parsed.add(result);
+        }
+      }
+      return parsed;
+    }
+  }
+
+  /**
+   * Returns the paths of all assets, which are built from the index when this is called.
+   */
   public Set<String> getPaths() {
-    return index.keySet();
+    return Collections.unmodifiableSet(trie.getPaths());
   }
 
   public Directory getDirectory(String path) {
-    String[] pathParts = path.split("/");
-    Directory current = root;
-    for (String part : pathParts) {
-      current = current.getDirectory(part);
-    }
-    return current;
+    return root.getDirectory(path);
   }
   
   public Directory getRootDirectory() {
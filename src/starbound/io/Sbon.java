@@ -1,8 +1,13 @@
 package starbound.io;
 
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -11,12 +16,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 public class Sbon {
 
-  private static Sbon createSbonOrNull(Object value) {
+  static final Charset UTF_8 = Charset.forName("utf-8");
+
+  static Sbon createSbonOrNull(Object value) {
     if (value == null) {
       return null;
     }
@@ -32,29 +38,43 @@ public class Sbon {
     this.value = value;
   }
 
+  Object getValue() {
+    return value;
+  }
+
   public Sbon getByPath(String path) {
+    return getByPath(SbonPath.compile(path));
+  }
 
-    String[] keys = path.split("/");
-    Sbon current = this;
+  /**
+   * Returns the value at the path, or null if a key along the path is missing. Only the returned
+   * Sbon is allocated.
+   */
+  public Sbon getByPath(SbonPath path) {
+    Object current = value;
 
-    for (String key : keys) {
+    for (int i = 0; i < path.size(); i++) {
 
-      if (current.isMap()) { 
-        current = current.getByKey(key);
-      } else if (current.isList()) {
-        int index = Integer.parseInt(key);
-        current = current.getByIndex(index);
+      if (current instanceof Map) {
+        current = ((Map<?, ?>) current).get(path.keys[i]);
+      } else if (current instanceof List) {
+        int index = path.indexes[i];
+        if (index == SbonPath.NOT_AN_INDEX) {
+          throw new NumberFormatException(
+              "Key " + path.keys[i] + " in path " + path + " is not a list index");
+        }
+        current = ((List<?>) current).get(index);
       } else {
-        throw new AssertionError(String.format(String.format(
+        throw new AssertionError(String.format(
             "Cannot traverse to key %s in path %s because current element is not a list or a map "
-            + "(class: %s): %s", key, path, value.getClass(), value)));
+            + "(class: %s): %s", path.keys[i], path, current.getClass(), current));
       }
 
       if (current == null) {
-        return current;
+        return null;
       }
     }
-    return current;
+    return current == value ? this : new Sbon(current);
   }
   
   public Sbon tryPaths(String... paths) {
@@ -68,6 +88,10 @@ public class Sbon {
   }
 
   public Sbon getByPath(String path, Object defaultValue) {
+    return getByPath(SbonPath.compile(path), defaultValue);
+  }
+
+  public Sbon getByPath(SbonPath path, Object defaultValue) {
     Sbon value = getByPath(path);
     if (value == null) {
       return createSbonOrNull(defaultValue);
@@ -133,6 +157,40 @@ public class Sbon {
     return (List<?>) value;
   }
 
+  /**
+   * Returns a list of numbers as doubles. For lists that were decoded as only doubles, such as
+   * positions, this is the decoded array itself, so it takes no allocation and must not be
+   * modified.
+   */
+  public double[] asDoubleArray() {
+    if (value instanceof DoubleList) {
+      return ((DoubleList) value).values;
+    }
+    List<?> values = asList();
+    double[] doubles = new double[values.size()];
+    for (int i = 0; i < doubles.length; i++) {
+      doubles[i] = ((Number) values.get(i)).doubleValue();
+    }
+    return doubles;
+  }
+
+  /**
+   * Returns a list of numbers as longs, with doubles rounded towards zero. For lists that were
+   * decoded as only integers, such as tile positions, this is the decoded array itself, so it
+   * takes no allocation and must not be modified.
+   */
+  public long[] asLongArray() {
+    if (value instanceof LongList) {
+      return ((LongList) value).values;
+    }
+    List<?> values = asList();
+    long[] longs = new long[values.size()];
+    for (int i = 0; i < longs.length; i++) {
+      longs[i] = ((Number) values.get(i)).longValue();
+    }
+    return longs;
+  }
+
   public List<Sbon> asSbonList() {
     if (!isList()) {
       if (value == null) {
@@ -164,75 +222,114 @@ public class Sbon {
   
   public static String readString(ByteBuffer bytes) {
     int length = (int)readVarint(bytes);
-    byte[] chars = new byte[length];
-    bytes.get(chars);
-    return new String(chars, Charset.forName("utf-8"));
+    return readString(bytes, length);
   }
-  
+
+  /**
+   * Reads a string of the given length in bytes, which is not preceded by its length.
+   */
+  static String readString(ByteBuffer bytes, int length) {
+    int offset = bytes.position();
+    if (length > bytes.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String string = decodeString(bytes, offset, length);
+    bytes.position(offset + length);
+    return string;
+  }
+
+  // Strings up to this length in buffers without a backing array are copied to a per thread
+  // scratch array to be decoded, rather than to an array of their own
+  private static final int SCRATCH_LENGTH = 256;
+  private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[SCRATCH_LENGTH];
+    }
+  };
+
+  /**
+   * Decodes a string stored in the given bytes of the buffer, without moving the buffer, so the
+   * same buffer can be decoded from several threads at once. Strings in heap buffers are decoded
+   * straight from the backing array. Strings in other buffers, such as memory mapped files or
+   * read-only views, are copied out of a duplicate, through a reused scratch array if short.
+   */
+  static String decodeString(ByteBuffer bytes, int offset, int length) {
+    if (length == 0) {
+      return "";
+    }
+    if (bytes.hasArray()) {
+      return new String(bytes.array(), bytes.arrayOffset() + offset, length, UTF_8);
+    }
+    byte[] chars = length <= SCRATCH_LENGTH ? SCRATCH.get() : new byte[length];
+    ByteBuffer source = bytes.duplicate();
+    source.position(offset);
+    source.get(chars, 0, length);
+    return new String(chars, 0, length, UTF_8);
+  }
+
+  /**
+   * Reads an unsigned varint with absolute reads, moving the buffer only once at the end.
+   */
   public static long readVarint(ByteBuffer bytes) {
-    long value = 0;
+    int position = bytes.position();
+    // unrolled for the one and two byte varints that almost all lengths and integers fit in
+    byte b = bytes.get(position);
+    if (b >= 0) {
+      bytes.position(position + 1);
+      return b;
+    }
+    long value = b & 0b0111_1111;
+    b = bytes.get(position + 1);
+    if (b >= 0) {
+      bytes.position(position + 2);
+      return value << 7 | b;
+    }
+    value = value << 7 | (b & 0b0111_1111);
+    int i = position + 2;
     while (true) {
-      byte b = bytes.get();
-      if ((b & 0b1000_0000) == 0) {
-        return value << 7 | b;
-      }
+      b = bytes.get(i++);
       value = value << 7 | (b & 0b0111_1111);
+      if (b >= 0) {
+        bytes.position(i);
+        return value;
+      }
     }
   }
 
   public static Sbon readSbon(ByteBuffer bytes) {
     return createSbonOrNull(readDynamic(bytes));
   }
-  
-  public static Object readDynamic(ByteBuffer bytes) {
-    byte type = bytes.get();
-    switch (type) {
-    case 1:
-      return null;
-    case 2:
-      return bytes.getDouble();
-    case 3:
-      return bytes.get() != 0;
-    case 4:
-      return readSignedVarint(bytes);
-    case 5:
-      return readString(bytes);
-    case 6:
-      return readList(bytes);
-    case 7:
-      return readMap(bytes);
-    default:
-      throw new AssertionError("Unknown dynamic type: " + type);
-    }
+
+  public static Sbon readSbon(ByteBuffer bytes, KeyInterner keys) {
+    return createSbonOrNull(readDynamic(bytes, keys));
   }
-  
-  private static long readSignedVarint(ByteBuffer bytes) {
-    long v = readVarint(bytes);
-    if ((v & 1) != 0) {
-      return -((v >> 1) + 1);
-    } else {
-      return v >> 1;
-    }
+
+  /**
+   * Reads a value, decoding only the parts of it in the projection and skipping the rest.
+   */
+  public static Sbon readProjectedSbon(ByteBuffer bytes, SbonProjection projection) {
+    return createSbonOrNull(projection.read(new SbonReader(bytes), bytes));
   }
-  
-  private static List<Object> readList(ByteBuffer bytes) {
-    int length = (int)readVarint(bytes);
-    ArrayList<Object> list = new ArrayList<>(length);
-    for (int i = 0; i < length; i++) {
-      list.add(readDynamic(bytes));
-    }
-    return list;
+
+  public static Object readDynamic(ByteBuffer bytes) {
+    return new SbonReader(bytes).readValue();
   }
-  
+
+  /**
+   * Reads a value, sharing its map keys with everything else read with the interner.
+   */
+  public static Object readDynamic(ByteBuffer bytes, KeyInterner keys) {
+    return new SbonReader(bytes, keys).readValue();
+  }
+
+  /**
+   * Reads a map that is stored without its type, such as the metadata of an asset package.
+   */
   public static Map<String, ?> readMap(ByteBuffer bytes) {
-    int length = (int)readVarint(bytes);
-    Map<String, Object> map = new HashMap<>(length);
-    for (int i = 0; i < length; i++) {
-      String key = readString(bytes);
-      Object value = readDynamic(bytes);
-      map.put(key, value);
-    }
-    return map;
+    SbonReader reader = new SbonReader(bytes);
+    reader.beginMapEntries();
+    return reader.readMapEntries();
   }
 
   public void debugPrint() {
@@ -240,15 +337,43 @@ public class Sbon {
   }
 
   public void debugPrint(String fileName) {
-    try {
-      debugPrint(new PrintStream(fileName));
+    try (PrintStream out = new PrintStream(fileName)) {
+      debugPrint(out);
     } catch (FileNotFoundException e) {
       throw new RuntimeException(e);
     }
   }
 
-  public void debugPrint(PrintStream out) {
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    out.println(gson.toJson(value));
+  /**
+   * Prints the value as pretty printed JSON, streaming it to the output. Like Gson's defaults,
+   * map entries with null values are left out and HTML characters are escaped. The text is
+   * encoded with the charset of the output.
+   */
+  public void debugPrint(final PrintStream out) {
+    try {
+      Writer writer = new BufferedWriter(new Writer() {
+        @Override
+        public void write(char[] chars, int offset, int length) {
+          out.append(CharBuffer.wrap(chars, offset, length));
+        }
+
+        @Override
+        public void flush() {
+          out.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+      });
+      JsonWriter json = SbonJsonExporter.createJsonWriter(writer);
+      json.setHtmlSafe(true);
+      json.setSerializeNulls(false);
+      SbonJsonExporter.export(value, json);
+      writer.flush();
+      out.println();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 }
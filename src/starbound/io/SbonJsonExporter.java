@@ -0,0 +1,135 @@
+package starbound.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes Sbon as JSON. Sbon bytes are converted as they are read, one token at a time, so even
+ * the entities of a whole world can be written out without decoding them into memory first.
+ */
+public class SbonJsonExporter {
+
+  /**
+   * Returns a writer that pretty prints with two spaces, like Gson's pretty printing. It is
+   * lenient, so that NaN and infinite doubles are written rather than rejected.
+   */
+  public static JsonWriter createJsonWriter(Writer out) {
+    JsonWriter writer = new JsonWriter(out);
+    writer.setIndent("  ");
+    writer.setLenient(true);
+    return writer;
+  }
+
+  /**
+   * Writes the next value of the reader, including everything in it if it is a list or map.
+   */
+  public static void export(SbonReader in, JsonWriter out) throws IOException {
+    switch (in.nextToken()) {
+    case NULL:
+      in.readNull();
+      out.nullValue();
+      break;
+    case DOUBLE:
+      out.value(in.readDouble());
+      break;
+    case BOOLEAN:
+      out.value(in.readBoolean());
+      break;
+    case INTEGER:
+      out.value(in.readLong());
+      break;
+    case STRING:
+      out.value(in.readString());
+      break;
+    case BEGIN_LIST:
+      in.beginList();
+      out.beginArray();
+      while (in.hasNext()) {
+        export(in, out);
+      }
+      in.endList();
+      out.endArray();
+      break;
+    case BEGIN_MAP:
+      in.beginMap();
+      out.beginObject();
+      while (in.hasNext()) {
+        out.name(in.nextName());
+        export(in, out);
+      }
+      in.endMap();
+      out.endObject();
+      break;
+    default:
+      throw new IllegalStateException("Expected a value but was " + in.nextToken());
+    }
+  }
+
+  /**
+   * Writes a versioned json read from the buffer as an object with its identifier, its version if
+   * it has one, and its data.
+   */
+  public static void exportVersionedJson(ByteBuffer bytes, JsonWriter out) throws IOException {
+    out.beginObject();
+    out.name("identifier").value(Sbon.readString(bytes));
+    boolean versioned = bytes.get() != 0;
+    if (versioned) {
+      out.name("version").value(bytes.getInt());
+    }
+    out.name("data");
+    export(new SbonReader(bytes), out);
+    out.endObject();
+  }
+
+  /**
+   * Writes a value that was already decoded, without building its JSON in memory.
+   */
+  public static void export(Object value, JsonWriter out) throws IOException {
+    if (value == null) {
+      out.nullValue();
+    } else if (value instanceof Sbon) {
+      export(((Sbon) value).getValue(), out);
+    } else if (value instanceof String) {
+      out.value((String) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      out.value(((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      out.value(((Number) value).longValue());
+    } else if (value instanceof Boolean) {
+      out.value((Boolean) value);
+    } else if (value instanceof DoubleList) {
+      out.beginArray();
+      for (double element : ((DoubleList) value).values) {
+        out.value(element);
+      }
+      out.endArray();
+    } else if (value instanceof LongList) {
+      out.beginArray();
+      for (long element : ((LongList) value).values) {
+        out.value(element);
+      }
+      out.endArray();
+    } else if (value instanceof List) {
+      out.beginArray();
+      for (Object element : (List<?>) value) {
+        export(element, out);
+      }
+      out.endArray();
+    } else if (value instanceof Map) {
+      out.beginObject();
+      for (Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        out.name((String) entry.getKey());
+        export(entry.getValue(), out);
+      }
+      out.endObject();
+    } else {
+      throw new IllegalArgumentException("Cannot export " + value.getClass() + " as JSON");
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package starbound.io;
+
+/**
+ * A path of map keys and list indexes separated by slashes, such as {@code "item/content"} or
+ * {@code "bookmarks/0/1"}, split and parsed once so it can be looked up repeatedly with
+ * {@link Sbon#getByPath(SbonPath)} without any parsing.
+ */
+public class SbonPath {
+
+  // Index of segments that are not numbers, which can only be used as map keys
+  static final int NOT_AN_INDEX = -1;
+
+  public static SbonPath compile(String path) {
+    int count = 1;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == '/') {
+        count++;
+      }
+    }
+
+    String[] keys = new String[count];
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      keys[i] = path.substring(start, end);
+      start = end + 1;
+    }
+    return new SbonPath(path, keys);
+  }
+
+  private final String path;
+  final String[] keys;
+  final int[] indexes;
+
+  private SbonPath(String path, String[] keys) {
+    this.path = path;
+    this.keys = keys;
+    this.indexes = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      indexes[i] = parseIndex(keys[i]);
+    }
+  }
+
+  private static int parseIndex(String key) {
+    if (key.isEmpty() || key.length() > 9) {
+      return NOT_AN_INDEX;
+    }
+    int index = 0;
+    for (int i = 0; i < key.length(); i++) {
+      char c = key.charAt(i);
+      if (c < '0' || c > '9') {
+        return NOT_AN_INDEX;
+      }
+      index = index * 10 + (c - '0');
+    }
+    return index;
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+}
@@ -0,0 +1,172 @@
+package starbound.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The parts of an Sbon value to decode, as paths like those of {@link SbonPath}, in which
+ * {@code *} stands for every element of a list or value of a map. Reading with a projection
+ * decodes the values at the end of its paths and the maps and lists on the way to them, and
+ * skips everything else without decoding it. Map keys are compared by their encoded bytes, so
+ * skipped keys aren't decoded either.
+ *
+ * <p>Maps in the result only have the entries that were kept. Lists keep their size, with null in
+ * place of elements that were skipped.
+ */
+public class SbonProjection {
+
+  private static final String WILDCARD = "*";
+
+  public static SbonProjection of(String... paths) {
+    Node root = new Node(null);
+    for (String path : paths) {
+      SbonPath compiled = SbonPath.compile(path);
+      Node node = root;
+      for (int i = 0; i < compiled.size() && !node.keepAll; i++) {
+        node = node.getOrAddChild(compiled.keys[i]);
+      }
+      node.keepAll();
+    }
+    return new SbonProjection(String.join(", ", paths), root);
+  }
+
+  private static class Node {
+
+    final String key;
+    final byte[] encodedKey;
+    final int index;
+    boolean keepAll;
+    Node[] children = new Node[0];
+    Node wildcard;
+
+    Node(String key) {
+      this.key = key;
+      this.encodedKey = key == null ? null : key.getBytes(Sbon.UTF_8);
+      this.index = key == null ? SbonPath.NOT_AN_INDEX : SbonPath.compile(key).indexes[0];
+    }
+
+    Node getOrAddChild(String key) {
+      if (key.equals(WILDCARD)) {
+        if (wildcard == null) {
+          wildcard = new Node(key);
+        }
+        return wildcard;
+      }
+      for (Node child : children) {
+        if (child.key.equals(key)) {
+          return child;
+        }
+      }
+      Node child = new Node(key);
+      children = Arrays.copyOf(children, children.length + 1);
+      children[children.length - 1] = child;
+      return child;
+    }
+
+    void keepAll() {
+      keepAll = true;
+      children = new Node[0];
+      wildcard = null;
+    }
+
+    /**
+     * Returns the child for the map key stored in the bytes, or null if the entry is skipped.
+     */
+    Node findChild(ByteBuffer bytes, int offset, int length) {
+      for (Node child : children) {
+        if (child.encodedKey.length == length && equals(child.encodedKey, bytes, offset)) {
+          return child;
+        }
+      }
+      return wildcard;
+    }
+
+    /**
+     * Returns the child for the list index, or null if the element is skipped.
+     */
+    Node findChild(int index) {
+      for (Node child : children) {
+        if (child.index == index) {
+          return child;
+        }
+      }
+      return wildcard;
+    }
+
+    private static boolean equals(byte[] key, ByteBuffer bytes, int offset) {
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != bytes.get(offset + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private final String paths;
+  private final Node root;
+
+  private SbonProjection(String paths, Node root) {
+    this.paths = paths;
+    this.root = root;
+  }
+
+  /**
+   * Reads the next value of the reader with the projection.
+   */
+  Object read(SbonReader reader, ByteBuffer bytes) {
+    return read(reader, bytes, root);
+  }
+
+  private static Object read(SbonReader reader, ByteBuffer bytes, Node node) {
+    if (node.keepAll) {
+      return reader.readValue();
+    }
+    switch (reader.nextToken()) {
+    case BEGIN_MAP: {
+      reader.beginMap();
+      List<String> keys = new ArrayList<>();
+      List<Object> values = new ArrayList<>();
+      while (reader.hasNext()) {
+        int length = reader.skipName();
+        Node child = node.findChild(bytes, bytes.position() - length, length);
+        if (child == null) {
+          reader.skipValue();
+          continue;
+        }
+        keys.add(child == node.wildcard
+            ? Sbon.decodeString(bytes, bytes.position() - length, length)
+            : child.key);
+        values.add(read(reader, bytes, child));
+      }
+      reader.endMap();
+      return new ArrayMap(
+          keys.toArray(new String[keys.size()]), values.toArray(), keys.size());
+    }
+    case BEGIN_LIST: {
+      reader.beginList();
+      Object[] values = new Object[reader.remaining()];
+      for (int i = 0; i < values.length; i++) {
+        Node child = node.findChild(i);
+        if (child == null) {
+          reader.skipValue();
+        } else {
+          values[i] = read(reader, bytes, child);
+        }
+      }
+      reader.endList();
+      return Arrays.asList(values);
+    }
+    default:
+      // the path goes on below a value that has no children, which is kept as it is
+      return reader.readValue();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return paths;
+  }
+}
@@ -0,0 +1,427 @@
+package starbound.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A query over Sbon values, such as the entities of a world, in a small SQL-like language:
+ *
+ * <pre>
+ * select name, tilePosition from ObjectEntity where items/&#42;/content/name = diamond
+ * </pre>
+ *
+ * <p>Selected and compared values are paths like those of {@link SbonPath}, in which {@code *}
+ * stands for every element of a list or value of a map, so a path can match any number of values.
+ * The optional from clause keeps only versioned jsons with the identifier. Conditions compare
+ * with {@code = != < <= > >=} or {@code ~} (contains), are joined with {@code and}, and hold if
+ * any value matched by their path satisfies them. Numbers are compared as numbers and everything
+ * else as text. Paths and values that contain spaces or operators can be quoted.
+ *
+ * <p>A compiled query can be evaluated from several threads at once.
+ */
+public class SbonQuery {
+
+  private static final String OPERATOR_CHARS = "=!<>~";
+  private static final String WILDCARD = "*";
+  private static final int ENTITIES_PER_TASK = 256;
+
+  /**
+   * Compiles a query. Throws IllegalArgumentException if it is not valid.
+   */
+  public static SbonQuery compile(String query) {
+    return new Parser(query).parse();
+  }
+
+  /**
+   * A versioned json that matched a query, with the values of each selected path.
+   */
+  public static class Row {
+
+    public final VersionedJson source;
+    private final List<List<Sbon>> values;
+
+    private Row(VersionedJson source, List<List<Sbon>> values) {
+      this.source = source;
+      this.values = values;
+    }
+
+    /**
+     * Returns the values matched by the selected path with the index, in the order of the query.
+     */
+    public List<Sbon> get(int column) {
+      return values.get(column);
+    }
+  }
+
+  private final String query;
+  private final List<QueryPath> selected;
+  private final String identifier;
+  private final List<Condition> conditions;
+
+  private SbonQuery(
+      String query, List<QueryPath> selected, String identifier, List<Condition> conditions) {
+    this.query = query;
+    this.selected = selected;
+    this.identifier = identifier;
+    this.conditions = conditions;
+  }
+
+  /**
+   * Returns the selected paths, in the order of the query.
+   */
+  public List<String> getColumns() {
+    List<String> columns = new ArrayList<>(selected.size());
+    for (QueryPath path : selected) {
+      columns.add(path.toString());
+    }
+    return columns;
+  }
+
+  /**
+   * Returns whether the versioned json has the identifier of the from clause and meets the
+   * conditions.
+   */
+  public boolean matches(VersionedJson json) {
+    return (identifier == null || identifier.equals(json.identifier)) && matches(json.data);
+  }
+
+  /**
+   * Returns whether the value meets the conditions. The from clause is not checked.
+   */
+  public boolean matches(Sbon value) {
+    Object root = value == null ? null : value.getValue();
+    for (Condition condition : conditions) {
+      if (!condition.matches(root)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the values matched by each selected path.
+   */
+  public List<List<Sbon>> select(Sbon value) {
+    Object root = value == null ? null : value.getValue();
+    List<List<Sbon>> values = new ArrayList<>(selected.size());
+    List<Object> matches = new ArrayList<>();
+    for (QueryPath path : selected) {
+      matches.clear();
+      path.collect(root, 0, matches);
+      List<Sbon> column = new ArrayList<>(matches.size());
+      for (Object match : matches) {
+        column.add(Sbon.createSbonOrNull(match));
+      }
+      values.add(column);
+    }
+    return values;
+  }
+
+  /**
+   * Runs the query over the versioned jsons in parallel, and returns the rows of those that
+   * match in their original order.
+   */
+  public List<Row> run(List<VersionedJson> jsons) {
+    return ForkJoinPool.commonPool().invoke(new RunTask(this, jsons, 0, jsons.size()));
+  }
+
+  @Override
+  public String toString() {
+    return query;
+  }
+
+  @SuppressWarnings("serial")
+  private static class RunTask extends RecursiveTask<List<Row>> {
+
+    private final SbonQuery query;
+    private final List<VersionedJson> jsons;
+    private final int start, end;
+
+    RunTask(SbonQuery query, List<VersionedJson> jsons, int start, int end) {
+      this.query = query;
+      this.jsons = jsons;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<Row> compute() {
+      if (end - start > ENTITIES_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        RunTask top = new RunTask(query, jsons, mid, end);
+        top.fork();
+        List<Row> rows = new RunTask(query, jsons, start, mid).compute();
+        rows.addAll(top.join());
+        return rows;
+      }
+
+      List<Row> rows = new ArrayList<>();
+      for (int i = start; i < end; i++) {
+        VersionedJson json = jsons.get(i);
+        if (query.matches(json)) {
+          rows.add(new Row(json, query.select(json.data)));
+        }
+      }
+      return rows;
+    }
+  }
+
+  /**
+   * A path in which segments can be wildcards.
+   */
+  private static class QueryPath {
+
+    private final SbonPath path;
+    private final boolean[] wildcards;
+
+    QueryPath(String path) {
+      this.path = SbonPath.compile(path);
+      this.wildcards = new boolean[this.path.size()];
+      for (int i = 0; i < wildcards.length; i++) {
+        wildcards[i] = this.path.keys[i].equals(WILDCARD);
+      }
+    }
+
+    /**
+     * Adds the values below the current one that match the path from the segment on. Values that
+     * don't have a key or index of the path don't match.
+     */
+    void collect(Object current, int segment, List<Object> matches) {
+      if (segment == wildcards.length) {
+        matches.add(current);
+        return;
+      }
+      if (current instanceof Map) {
+        Map<?, ?> map = (Map<?, ?>) current;
+        if (wildcards[segment]) {
+          for (Object value : map.values()) {
+            collect(value, segment + 1, matches);
+          }
+        } else {
+          String key = path.keys[segment];
+          Object value = map.get(key);
+          if (value != null || map.containsKey(key)) {
+            collect(value, segment + 1, matches);
+          }
+        }
+      } else if (current instanceof List) {
+        List<?> list = (List<?>) current;
+        if (wildcards[segment]) {
+          for (Object value : list) {
+            collect(value, segment + 1, matches);
+          }
+        } else {
+          int index = path.indexes[segment];
+          if (index != SbonPath.NOT_AN_INDEX && index < list.size()) {
+            collect(list.get(index), segment + 1, matches);
+          }
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return path.toString();
+    }
+  }
+
+  private static class Condition {
+
+    private final QueryPath path;
+    private final String operator;
+    private final String literal;
+    // The literal as a number, or NaN if it is not one
+    private final double number;
+
+    Condition(QueryPath path, String operator, String literal) {
+      this.path = path;
+      this.operator = operator;
+      this.literal = literal;
+      double number;
+      try {
+        number = Double.parseDouble(literal);
+      } catch (NumberFormatException e) {
+        number = Double.NaN;
+      }
+      this.number = number;
+    }
+
+    boolean matches(Object root) {
+      List<Object> values = new ArrayList<>();
+      path.collect(root, 0, values);
+      for (Object value : values) {
+        if (test(value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean test(Object value) {
+      if (value instanceof Map || value instanceof List) {
+        return false;
+      }
+      String text = String.valueOf(value);
+      if (operator.equals("~")) {
+        return text.contains(literal);
+      }
+      int comparison;
+      if (value instanceof Number && !Double.isNaN(number)) {
+        comparison = Double.compare(((Number) value).doubleValue(), number);
+      } else {
+        comparison = text.compareTo(literal);
+      }
+      switch (operator) {
+      case "=":
+        return comparison == 0;
+      case "!=":
+        return comparison != 0;
+      case "<":
+        return comparison < 0;
+      case "<=":
+        return comparison <= 0;
+      case ">":
+        return comparison > 0;
+      case ">=":
+        return comparison >= 0;
+      default:
+        throw new AssertionError("Unknown operator: " + operator);
+      }
+    }
+  }
+
+  private static class Parser {
+
+    private final String query;
+    private final List<String> tokens = new ArrayList<>();
+    private int next;
+
+    Parser(String query) {
+      this.query = query;
+      tokenize();
+    }
+
+    SbonQuery parse() {
+      expectKeyword("select");
+      List<QueryPath> selected = new ArrayList<>();
+      selected.add(new QueryPath(value()));
+      while (peek(",")) {
+        next++;
+        selected.add(new QueryPath(value()));
+      }
+
+      String identifier = null;
+      if (peekKeyword("from")) {
+        next++;
+        identifier = value();
+      }
+
+      List<Condition> conditions = new ArrayList<>();
+      if (peekKeyword("where")) {
+        next++;
+        conditions.add(condition());
+        while (peekKeyword("and")) {
+          next++;
+          conditions.add(condition());
+        }
+      }
+
+      if (next < tokens.size()) {
+        throw invalid("unexpected " + tokens.get(next));
+      }
+      return new SbonQuery(
+          query, Collections.unmodifiableList(selected), identifier, conditions);
+    }
+
+    private Condition condition() {
+      QueryPath path = new QueryPath(value());
+      String operator = next < tokens.size() ? tokens.get(next++) : "nothing";
+      switch (operator) {
+      case "=":
+      case "!=":
+      case "<":
+      case "<=":
+      case ">":
+      case ">=":
+      case "~":
+        return new Condition(path, operator, value());
+      default:
+        throw invalid("expected an operator after " + path + " but was " + operator);
+      }
+    }
+
+    /**
+     * Returns the next token as a path or literal, without its quotes.
+     */
+    private String value() {
+      if (next == tokens.size()) {
+        throw invalid("unexpected end");
+      }
+      String token = tokens.get(next++);
+      if (token.startsWith("\"")) {
+        return token.substring(1, token.length() - 1);
+      }
+      if (token.equals(",") || OPERATOR_CHARS.indexOf(token.charAt(0)) >= 0) {
+        throw invalid("unexpected " + token);
+      }
+      return token;
+    }
+
+    private boolean peek(String token) {
+      return next < tokens.size() && tokens.get(next).equals(token);
+    }
+
+    private boolean peekKeyword(String keyword) {
+      return next < tokens.size() && tokens.get(next).equalsIgnoreCase(keyword);
+    }
+
+    private void expectKeyword(String keyword) {
+      if (!peekKeyword(keyword)) {
+        throw invalid("expected " + keyword);
+      }
+      next++;
+    }
+
+    /**
+     * Splits the query into words, commas, operators and quoted strings. Quoted strings keep
+     * their quotes so that they are never taken for keywords.
+     */
+    private void tokenize() {
+      int i = 0;
+      while (i < query.length()) {
+        char c = query.charAt(i);
+        int start = i;
+        if (Character.isWhitespace(c)) {
+          i++;
+          continue;
+        } else if (c == ',') {
+          i++;
+        } else if (c == '"') {
+          i = query.indexOf('"', i + 1) + 1;
+          if (i == 0) {
+            throw invalid("unterminated quote");
+          }
+        } else if (OPERATOR_CHARS.indexOf(c) >= 0) {
+          while (i < query.length() && OPERATOR_CHARS.indexOf(query.charAt(i)) >= 0) {
+            i++;
+          }
+        } else {
+          while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+              && query.charAt(i) != ',' && query.charAt(i) != '"'
+              && OPERATOR_CHARS.indexOf(query.charAt(i)) < 0) {
+            i++;
+          }
+        }
+        tokens.add(query.substring(start, i));
+      }
+    }
+
+    private IllegalArgumentException invalid(String reason) {
+      return new IllegalArgumentException("Invalid query, " + reason + ": " + query);
+    }
+  }
+}
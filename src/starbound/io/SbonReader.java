@@ -0,0 +1,443 @@
+package starbound.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads Sbon one token at a time, in the style of Gson's JsonReader, so that large values can be
+ * processed or skipped without building them in memory. Reads start at the buffer's position and
+ * advance it, so other data can be read from the buffer before and after a value.
+ *
+ * <p>A map is read by calling {@link #beginMap()}, then {@link #nextName()} followed by reading
+ * or skipping the value while {@link #hasNext()}, then {@link #endMap()}. Lists are the same
+ * without names.
+ */
+public class SbonReader {
+
+  public enum Token {
+    NULL,
+    DOUBLE,
+    BOOLEAN,
+    INTEGER,
+    STRING,
+    BEGIN_LIST,
+    BEGIN_MAP,
+    /** The key of a map entry, read with {@link SbonReader#nextName()}. */
+    NAME,
+    END_LIST,
+    END_MAP,
+    /** The buffer has no more data, outside of any list or map. */
+    END_DOCUMENT
+  }
+
+  private static final byte TYPE_NULL = 1;
+  private static final byte TYPE_DOUBLE = 2;
+  private static final byte TYPE_BOOLEAN = 3;
+  private static final byte TYPE_INTEGER = 4;
+  private static final byte TYPE_STRING = 5;
+  private static final byte TYPE_LIST = 6;
+  private static final byte TYPE_MAP = 7;
+
+  private final ByteBuffer bytes;
+  private KeyInterner keys;
+  // Per open list or map, how many values are left, and for maps whether the name of the next
+  // entry has been read
+  private int[] remaining = new int[8];
+  private boolean[] isMap = new boolean[8];
+  private boolean[] nameRead = new boolean[8];
+  private int depth;
+
+  public SbonReader(ByteBuffer bytes) {
+    this(bytes, null);
+  }
+
+  /**
+   * Creates a reader that shares map keys with everything else read with the interner. Without
+   * one, keys are only shared within what this reader reads.
+   */
+  public SbonReader(ByteBuffer bytes, KeyInterner keys) {
+    this.bytes = bytes;
+    this.keys = keys;
+  }
+
+  /**
+   * Returns the type of the next token without consuming it.
+   */
+  public Token nextToken() {
+    if (depth > 0) {
+      if (remaining[depth] == 0) {
+        return isMap[depth] ? Token.END_MAP : Token.END_LIST;
+      }
+      if (isMap[depth] && !nameRead[depth]) {
+        return Token.NAME;
+      }
+    } else if (!bytes.hasRemaining()) {
+      return Token.END_DOCUMENT;
+    }
+    return tokenOf(bytes.get(bytes.position()));
+  }
+
+  /**
+   * Returns whether the current list or map has more elements.
+   */
+  public boolean hasNext() {
+    return depth > 0 && remaining[depth] > 0;
+  }
+
+  public void beginList() {
+    expectType(TYPE_LIST);
+    push(false);
+  }
+
+  public void endList() {
+    pop(false);
+  }
+
+  public void beginMap() {
+    expectType(TYPE_MAP);
+    push(true);
+  }
+
+  /**
+   * Starts reading a map that is stored without its type, such as the metadata of an asset
+   * package. Ends with {@link #endMap()} like any other map.
+   */
+  public void beginMapEntries() {
+    push(true);
+  }
+
+  public void endMap() {
+    pop(true);
+  }
+
+  public String nextName() {
+    if (depth == 0 || !isMap[depth] || nameRead[depth] || remaining[depth] == 0) {
+      throw new IllegalStateException("Expected NAME but was " + nextToken());
+    }
+    nameRead[depth] = true;
+    int length = (int)Sbon.readVarint(bytes);
+    int offset = bytes.position();
+    bytes.position(offset + length);
+    if (keys == null) {
+      keys = new KeyInterner();
+    }
+    return keys.intern(bytes, offset, length);
+  }
+
+  /**
+   * Skips the name of the next map entry without decoding it, and returns its length in bytes.
+   */
+  int skipName() {
+    if (depth == 0 || !isMap[depth] || nameRead[depth] || remaining[depth] == 0) {
+      throw new IllegalStateException("Expected NAME but was " + nextToken());
+    }
+    nameRead[depth] = true;
+    int length = (int)Sbon.readVarint(bytes);
+    bytes.position(bytes.position() + length);
+    return length;
+  }
+
+  public void readNull() {
+    expectType(TYPE_NULL);
+    afterValue();
+  }
+
+  public boolean readBoolean() {
+    expectType(TYPE_BOOLEAN);
+    boolean value = bytes.get() != 0;
+    afterValue();
+    return value;
+  }
+
+  /**
+   * Reads an integer, or a double rounded towards zero.
+   */
+  public long readLong() {
+    byte type = readType();
+    long value;
+    if (type == TYPE_INTEGER) {
+      value = readSignedVarint();
+    } else if (type == TYPE_DOUBLE) {
+      value = (long) bytes.getDouble();
+    } else {
+      throw unexpected(type, Token.INTEGER);
+    }
+    afterValue();
+    return value;
+  }
+
+  /**
+   * Reads a double, or an integer as a double.
+   */
+  public double readDouble() {
+    byte type = readType();
+    double value;
+    if (type == TYPE_DOUBLE) {
+      value = bytes.getDouble();
+    } else if (type == TYPE_INTEGER) {
+      value = readSignedVarint();
+    } else {
+      throw unexpected(type, Token.DOUBLE);
+    }
+    afterValue();
+    return value;
+  }
+
+  public String readString() {
+    expectType(TYPE_STRING);
+    String value = Sbon.readString(bytes);
+    afterValue();
+    return value;
+  }
+
+  /**
+   * Skips the next value, including everything in it if it is a list or map. If the name of a
+   * map entry is next, the name and its value are skipped.
+   */
+  public void skipValue() {
+    if (depth > 0 && isMap[depth] && !nameRead[depth]) {
+      nextName();
+    }
+    if (depth > 0 && remaining[depth] == 0) {
+      throw new IllegalStateException("Expected a value but was " + nextToken());
+    }
+    skipDynamic();
+    afterValue();
+  }
+
+  private void skipDynamic() {
+    byte type = bytes.get();
+    switch (type) {
+    case TYPE_NULL:
+      break;
+    case TYPE_DOUBLE:
+      bytes.position(bytes.position() + 8);
+      break;
+    case TYPE_BOOLEAN:
+      bytes.position(bytes.position() + 1);
+      break;
+    case TYPE_INTEGER:
+      Sbon.readVarint(bytes);
+      break;
+    case TYPE_STRING:
+      skipString();
+      break;
+    case TYPE_LIST: {
+      int length = (int)Sbon.readVarint(bytes);
+      for (int i = 0; i < length; i++) {
+        skipDynamic();
+      }
+      break;
+    }
+    case TYPE_MAP: {
+      int length = (int)Sbon.readVarint(bytes);
+      for (int i = 0; i < length; i++) {
+        skipString();
+        skipDynamic();
+      }
+      break;
+    }
+    default:
+      throw new AssertionError("Unknown dynamic type: " + type);
+    }
+  }
+
+  private void skipString() {
+    int length = (int)Sbon.readVarint(bytes);
+    bytes.position(bytes.position() + length);
+  }
+
+  /**
+   * Reads the next value into maps, lists, strings, longs, doubles, booleans and nulls, like
+   * {@link Sbon#readDynamic(ByteBuffer)}. Maps keep the order of their entries.
+   */
+  public Object readValue() {
+    switch (nextToken()) {
+    case NULL:
+      readNull();
+      return null;
+    case DOUBLE:
+      return readDouble();
+    case BOOLEAN:
+      return readBoolean();
+    case INTEGER:
+      return readLong();
+    case STRING:
+      return readString();
+    case BEGIN_LIST: {
+      Object numbers = readNumericList();
+      if (numbers != null) {
+        return numbers;
+      }
+      beginList();
+      List<Object> list = new ArrayList<>(remaining());
+      while (hasNext()) {
+        list.add(readValue());
+      }
+      endList();
+      return list;
+    }
+    case BEGIN_MAP:
+      beginMap();
+      return readMapEntries();
+    default:
+      throw new IllegalStateException("Expected a value but was " + nextToken());
+    }
+  }
+
+  /**
+   * Reads the next value if it is a list of only doubles or only integers, such as a position or
+   * a color, into a {@link DoubleList} or {@link LongList}. For any other value, including empty
+   * lists, returns null and leaves the reader where it was.
+   */
+  Object readNumericList() {
+    if (nextToken() != Token.BEGIN_LIST) {
+      return null;
+    }
+    int start = bytes.position();
+    beginList();
+    int length = remaining();
+    Token type = length > 0 ? nextToken() : null;
+    if (type == Token.DOUBLE) {
+      double[] values = new double[length];
+      for (int i = 0; i < length; i++) {
+        if (nextToken() != Token.DOUBLE) {
+          return rewind(start);
+        }
+        values[i] = readDouble();
+      }
+      endList();
+      return new DoubleList(values);
+    }
+    if (type == Token.INTEGER) {
+      long[] values = new long[length];
+      for (int i = 0; i < length; i++) {
+        if (nextToken() != Token.INTEGER) {
+          return rewind(start);
+        }
+        values[i] = readLong();
+      }
+      endList();
+      return new LongList(values);
+    }
+    return rewind(start);
+  }
+
+  /**
+   * Goes back to the start of a list that was begun, as if it had not been.
+   */
+  private Object rewind(int start) {
+    bytes.position(start);
+    depth--;
+    return null;
+  }
+
+  /**
+   * Reads the entries of a map that has been begun, and ends it.
+   */
+  Map<String, Object> readMapEntries() {
+    int length = remaining();
+    String[] keys = new String[length];
+    Object[] values = new Object[length];
+    for (int i = 0; i < length; i++) {
+      keys[i] = nextName();
+      values[i] = readValue();
+    }
+    endMap();
+    return new ArrayMap(keys, values, length);
+  }
+
+  /**
+   * Returns how many elements of the current list or map are left.
+   */
+  int remaining() {
+    return remaining[depth];
+  }
+
+  private void push(boolean map) {
+    int length = (int)Sbon.readVarint(bytes);
+    depth++;
+    if (depth == remaining.length) {
+      remaining = Arrays.copyOf(remaining, depth * 2);
+      isMap = Arrays.copyOf(isMap, depth * 2);
+      nameRead = Arrays.copyOf(nameRead, depth * 2);
+    }
+    remaining[depth] = length;
+    isMap[depth] = map;
+    nameRead[depth] = false;
+  }
+
+  private void pop(boolean map) {
+    if (depth == 0 || isMap[depth] != map || remaining[depth] != 0) {
+      throw new IllegalStateException(
+          "Expected " + (map ? Token.END_MAP : Token.END_LIST) + " but was " + nextToken());
+    }
+    depth--;
+    afterValue();
+  }
+
+  /**
+   * Counts a value of the current list or map as read.
+   */
+  private void afterValue() {
+    if (depth > 0) {
+      remaining[depth]--;
+      nameRead[depth] = false;
+    }
+  }
+
+  private byte readType() {
+    if (depth > 0) {
+      if (remaining[depth] == 0) {
+        throw new IllegalStateException("Expected a value but was " + nextToken());
+      }
+      if (isMap[depth] && !nameRead[depth]) {
+        throw new IllegalStateException("Expected a value but was " + Token.NAME);
+      }
+    }
+    return bytes.get();
+  }
+
+  private void expectType(byte expected) {
+    byte type = readType();
+    if (type != expected) {
+      throw unexpected(type, tokenOf(expected));
+    }
+  }
+
+  private IllegalStateException unexpected(byte type, Token expected) {
+    // put the type back so the reader is left where it was
+    bytes.position(bytes.position() - 1);
+    return new IllegalStateException("Expected " + expected + " but was " + tokenOf(type));
+  }
+
+  private Token tokenOf(byte type) {
+    switch (type) {
+    case TYPE_NULL:
+      return Token.NULL;
+    case TYPE_DOUBLE:
+      return Token.DOUBLE;
+    case TYPE_BOOLEAN:
+      return Token.BOOLEAN;
+    case TYPE_INTEGER:
+      return Token.INTEGER;
+    case TYPE_STRING:
+      return Token.STRING;
+    case TYPE_LIST:
+      return Token.BEGIN_LIST;
+    case TYPE_MAP:
+      return Token.BEGIN_MAP;
+    default:
+      throw new AssertionError("Unknown dynamic type: " + type);
+    }
+  }
+
+  private long readSignedVarint() {
+    long v = Sbon.readVarint(bytes);
+    // zigzag, shifting unsigned so that the full range of longs decodes
+    return (v >>> 1) ^ -(v & 1);
+  }
+}
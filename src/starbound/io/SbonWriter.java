@@ -0,0 +1,243 @@
+package starbound.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Writes Sbon into a growable buffer, the counterpart of {@link SbonReader}. Values decoded by
+ * {@link Sbon} are written back byte for byte as they were read: maps keep the order of their
+ * entries, and longs and doubles stay integers and doubles.
+ *
+ * <p>Lists and maps are written with their number of elements up front, so a list is written by
+ * calling {@link #beginList(int)} and then writing exactly that many values, and a map by calling
+ * {@link #beginMap(int)} and then {@link #name(String)} followed by a value for each entry. The
+ * writer doesn't check this. Call {@link #reset()} to reuse the buffer for the next value.
+ */
+public class SbonWriter {
+
+  private static final byte TYPE_NULL = 1;
+  private static final byte TYPE_DOUBLE = 2;
+  private static final byte TYPE_BOOLEAN = 3;
+  private static final byte TYPE_INTEGER = 4;
+  private static final byte TYPE_STRING = 5;
+  private static final byte TYPE_LIST = 6;
+  private static final byte TYPE_MAP = 7;
+
+  private byte[] buffer;
+  private int size;
+
+  public SbonWriter() {
+    this(256);
+  }
+
+  public SbonWriter(int initialCapacity) {
+    buffer = new byte[Math.max(initialCapacity, 16)];
+  }
+
+  /**
+   * Empties the buffer, keeping its capacity.
+   */
+  public void reset() {
+    size = 0;
+  }
+
+  /**
+   * Returns the number of bytes written.
+   */
+  public int size() {
+    return size;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * Returns the written bytes without copying them. The buffer is only valid until the next write
+   * or reset.
+   */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(buffer, 0, size).slice();
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  public void writeNull() {
+    writeByte(TYPE_NULL);
+  }
+
+  public void writeBoolean(boolean value) {
+    ensureCapacity(2);
+    buffer[size++] = TYPE_BOOLEAN;
+    buffer[size++] = (byte) (value ? 1 : 0);
+  }
+
+  public void writeLong(long value) {
+    writeByte(TYPE_INTEGER);
+    // zigzag, the inverse of SbonReader
+    writeVarint(value < 0 ? (~value << 1) | 1 : value << 1);
+  }
+
+  public void writeDouble(double value) {
+    ensureCapacity(9);
+    buffer[size++] = TYPE_DOUBLE;
+    writeLongBits(Double.doubleToRawLongBits(value));
+  }
+
+  public void writeString(String value) {
+    writeByte(TYPE_STRING);
+    writeRawString(value);
+  }
+
+  public void beginList(int length) {
+    writeByte(TYPE_LIST);
+    writeVarint(length);
+  }
+
+  public void beginMap(int length) {
+    writeByte(TYPE_MAP);
+    writeVarint(length);
+  }
+
+  /**
+   * Starts a map that is stored without its type, like {@link SbonReader#beginMapEntries()}.
+   */
+  public void beginMapEntries(int length) {
+    writeVarint(length);
+  }
+
+  /**
+   * Writes the key of the next map entry.
+   */
+  public void name(String name) {
+    writeRawString(name);
+  }
+
+  /**
+   * Writes maps, lists, strings, numbers, booleans, nulls and {@link Sbon} values. Integral numbers
+   * are written as integers and floating point numbers as doubles.
+   */
+  public void writeValue(Object value) {
+    if (value == null) {
+      writeNull();
+    } else if (value instanceof Sbon) {
+      writeValue(((Sbon) value).getValue());
+    } else if (value instanceof String) {
+      writeString((String) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Number) {
+      writeLong(((Number) value).longValue());
+    } else if (value instanceof Boolean) {
+      writeBoolean((Boolean) value);
+    } else if (value instanceof DoubleList) {
+      double[] values = ((DoubleList) value).values;
+      beginList(values.length);
+      for (double element : values) {
+        writeDouble(element);
+      }
+    } else if (value instanceof LongList) {
+      long[] values = ((LongList) value).values;
+      beginList(values.length);
+      for (long element : values) {
+        writeLong(element);
+      }
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      beginList(list.size());
+      for (Object element : list) {
+        writeValue(element);
+      }
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      beginMap(map.size());
+      for (Entry<?, ?> entry : map.entrySet()) {
+        name((String) entry.getKey());
+        writeValue(entry.getValue());
+      }
+    } else {
+      throw new IllegalArgumentException("Cannot write " + value.getClass() + " as Sbon");
+    }
+  }
+
+  /**
+   * Writes an unsigned varint, like {@link Sbon#readVarint(ByteBuffer)} reads it.
+   */
+  public void writeVarint(long value) {
+    ensureCapacity(10);
+    int groups = 1;
+    for (long rest = value >>> 7; rest != 0; rest >>>= 7) {
+      groups++;
+    }
+    for (int i = groups - 1; i > 0; i--) {
+      buffer[size++] = (byte) (0x80 | ((value >>> (7 * i)) & 0x7F));
+    }
+    buffer[size++] = (byte) (value & 0x7F);
+  }
+
+  /**
+   * Writes a string without its type, like {@link Sbon#readString(ByteBuffer)} reads it.
+   */
+  public void writeRawString(String value) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) >= 0x80) {
+        writeRawBytes(value.getBytes(Sbon.UTF_8));
+        return;
+      }
+    }
+    // ASCII, which most keys and values are, needs no encoding
+    writeVarint(length);
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      buffer[size++] = (byte) value.charAt(i);
+    }
+  }
+
+  private void writeRawBytes(byte[] bytes) {
+    writeVarint(bytes.length);
+    writeBytes(bytes);
+  }
+
+  void writeBytes(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  /**
+   * Writes a big endian int, like {@link ByteBuffer#getInt()} reads it.
+   */
+  void writeInt(int value) {
+    ensureCapacity(4);
+    buffer[size++] = (byte) (value >>> 24);
+    buffer[size++] = (byte) (value >>> 16);
+    buffer[size++] = (byte) (value >>> 8);
+    buffer[size++] = (byte) value;
+  }
+
+  private void writeLongBits(long bits) {
+    ensureCapacity(8);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buffer[size++] = (byte) (bits >>> shift);
+    }
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+  }
+}
@@ -24,6 +24,17 @@ public class StarboundFiles {
     return findFiles(".player", "player");
   }
 
+  public File getPlayerDirectory() {
+    return getStorageDirectory("player");
+  }
+
+  /**
+   * Returns the directory of the worlds and the players' client context files.
+   */
+  public File getUniverseDirectory() {
+    return getStorageDirectory("universe");
+  }
+
   public Map<String, File> findClientContextFiles() {
     Map<String, File> map = new HashMap<>();
     List<File> files = findFiles(".clientcontext", "universe");
@@ -48,7 +59,7 @@ public class StarboundFiles {
   
   private List<File> findFiles(String fileExtension, String storageSubdirectory) {
 
-    File storageSubdir = Paths.get(starboundInstallDir, "storage", storageSubdirectory).toFile();
+    File storageSubdir = getStorageDirectory(storageSubdirectory);
     String[] fleNames = storageSubdir.list(new FilenameFilter() {
       @Override
       public boolean accept(File dir, String name) {
@@ -62,4 +73,8 @@ public class StarboundFiles {
     }
     return files;
   }
+
+  private File getStorageDirectory(String storageSubdirectory) {
+    return Paths.get(starboundInstallDir, "storage", storageSubdirectory).toFile();
+  }
 }
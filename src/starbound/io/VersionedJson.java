@@ -1,13 +1,19 @@
 package starbound.io;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 public class VersionedJson {
 
+  private static final String SBVJ01_MAGIC = "SBVJ01";
+
   public final String identifier;
   public final boolean versioned;
   public final int version;
@@ -21,26 +27,131 @@ public class VersionedJson {
   }
 
   public static VersionedJson readSbvj01(File file) throws IOException {
+    return readVersionedJson(readSbvj01Bytes(file));
+  }
+
+  /**
+   * Maps a SBVJ01 file into memory and decodes only the parts of its data in the projection. The
+   * values before and between them are still skipped over, as Sbon doesn't store their lengths,
+   * so most of the file is paged in; what is saved is copying the file into the heap.
+   *
+   * <p>The decoded values are copied out of the file, so the result doesn't keep the mapping.
+   * The mapping is only released when it is garbage collected though, and on Windows a mapped
+   * file cannot be replaced until then.
+   */
+  public static VersionedJson mapSbvj01(File file, SbonProjection projection)
+      throws IOException {
+    return readVersionedJson(mapSbvj01Bytes(file), projection);
+  }
+
+  /**
+   * Maps a SBVJ01 file into memory, positioned at the versioned json after the magic. The same as
+   * {@link #readSbvj01Bytes(File)}, but the file is paged in as it is read rather than all at
+   * once. The file stays mapped until the buffer is garbage collected, and on Windows a mapped
+   * file cannot be replaced, so don't keep the buffer of a file the game may save over.
+   */
+  public static ByteBuffer mapSbvj01Bytes(File file) throws IOException {
+    ByteBuffer bytes;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      bytes = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    checkSbvj01Magic(file, bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns a reader for the data of a SBVJ01 file, to stream through it without decoding it.
+   */
+  public static SbonReader streamSbvj01(File file) throws IOException {
+    ByteBuffer bytes = readSbvj01Bytes(file);
+    Sbon.readString(bytes);
+    boolean versioned = bytes.get() != 0;
+    if (versioned) {
+      bytes.getInt();
+    }
+    return new SbonReader(bytes);
+  }
 
+  /**
+   * Returns the contents of a SBVJ01 file, positioned at the versioned json after the magic.
+   */
+  public static ByteBuffer readSbvj01Bytes(File file) throws IOException {
     ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
-    byte[] chars = new byte[6];
-    bytes.get(chars);
-    String magic = new String(chars, Charset.forName("utf-8"));
-    if (!magic.equals("SBVJ01")) {
+    checkSbvj01Magic(file, bytes);
+    return bytes;
+  }
+
+  private static void checkSbvj01Magic(File file, ByteBuffer bytes) {
+    String magic = Sbon.readString(bytes, SBVJ01_MAGIC.length());
+    if (!magic.equals(SBVJ01_MAGIC)) {
       throw new AssertionError("File " + file + " is not a SBVJ01 file, magic: " + magic);
     }
-
-    return readVersionedJson(bytes);
   }
 
   public static VersionedJson readVersionedJson(ByteBuffer bytes) {
+    return readVersionedJson(bytes, (KeyInterner) null);
+  }
+
+  /**
+   * Reads the value, sharing its map keys with everything else read with the interner.
+   */
+  public static VersionedJson readVersionedJson(ByteBuffer bytes, KeyInterner keys) {
     String name = Sbon.readString(bytes);
     boolean versioned = bytes.get() != 0;
     int version = -1;
     if (versioned) {
       version = bytes.getInt();
     }
-    Sbon data = Sbon.readSbon(bytes);
+    Sbon data = Sbon.readSbon(bytes, keys);
     return new VersionedJson(name, versioned, version, data);
   }
+
+  /**
+   * Reads the value, decoding only the parts of its data in the projection.
+   */
+  public static VersionedJson readVersionedJson(ByteBuffer bytes, SbonProjection projection) {
+    String name = Sbon.readString(bytes);
+    boolean versioned = bytes.get() != 0;
+    int version = -1;
+    if (versioned) {
+      version = bytes.getInt();
+    }
+    Sbon data = Sbon.readProjectedSbon(bytes, projection);
+    return new VersionedJson(name, versioned, version, data);
+  }
+
+  /**
+   * Writes this as a SBVJ01 file. A file read with {@link #readSbvj01(File)} is written back
+   * unchanged, unless a map in it has the same key more than once. Such a map is read with only
+   * the last value of the key, in the place of the first, so it is written with fewer entries.
+   */
+  public void writeSbvj01(File file) throws IOException {
+    SbonWriter out = new SbonWriter();
+    out.writeBytes(SBVJ01_MAGIC.getBytes(Sbon.UTF_8));
+    write(out);
+    try (OutputStream stream = new FileOutputStream(file)) {
+      out.writeTo(stream);
+    }
+  }
+
+  /**
+   * Writes this the way {@link #readVersionedJson(ByteBuffer)} reads it.
+   */
+  public void write(SbonWriter out) {
+    writeVersionedJson(out, identifier, versioned, version, data);
+  }
+
+  /**
+   * Writes a value as versioned json. The data can be anything {@link SbonWriter#writeValue}
+   * accepts.
+   */
+  public static void writeVersionedJson(
+      SbonWriter out, String identifier, boolean versioned, int version, Object data) {
+    out.writeRawString(identifier);
+    out.writeByte(versioned ? 1 : 0);
+    if (versioned) {
+      out.writeInt(version);
+    }
+    out.writeValue(data);
+  }
 }
@@ -2,6 +2,7 @@ package starbound.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -23,4 +24,29 @@ public class ZipUtil {
       throw new AssertionError("Could not decompress data", e);
     }
   }
+
+  /**
+   * Decompresses the first length bytes of the data, or all of it if it is shorter. Returns null
+   * if the compressed bytes end before that, as happens with only the start of the data.
+   */
+  public static byte[] decompressStart(byte[] compressedData, int length) {
+    Inflater decompressor = new Inflater();
+    try {
+      decompressor.setInput(compressedData);
+      byte[] buf = new byte[length];
+      int count = 0;
+      while (count < length && !decompressor.finished()) {
+        int inflated = decompressor.inflate(buf, count, length - count);
+        if (inflated == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+          return null;
+        }
+        count += inflated;
+      }
+      return Arrays.copyOf(buf, count);
+    } catch (DataFormatException e) {
+      throw new AssertionError("Could not decompress data", e);
+    } finally {
+      decompressor.end();
+    }
+  }
 }
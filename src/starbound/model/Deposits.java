@@ -0,0 +1,370 @@
+package starbound.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import starbound.model.TileSearch.TilePredicate;
+import starbound.model.World.WorldTiles;
+
+/**
+ * Finds connected groups of matching tiles, such as ore veins or cave pockets. Tiles are
+ * connected to the tiles above, below, left and right of them, and the left and right edges of
+ * the world are connected to each other.
+ */
+public class Deposits {
+
+  public static final Comparator<Deposit> BY_SIZE = new Comparator<Deposit>() {
+    @Override
+    public int compare(Deposit d1, Deposit d2) {
+      return Integer.compare(d2.area, d1.area);
+    }
+  };
+
+  /**
+   * Orders deposits by their distance to the given tile, taking the wrapping of the world into
+   * account.
+   */
+  public static Comparator<Deposit> byDistanceTo(int x, int y, int worldWidth) {
+    return new Comparator<Deposit>() {
+      @Override
+      public int compare(Deposit d1, Deposit d2) {
+        return Double.compare(
+            d1.distanceSquaredTo(x, y, worldWidth), d2.distanceSquaredTo(x, y, worldWidth));
+      }
+    };
+  }
+
+  /**
+   * Returns the deposits of tiles matching the predicate, largest first. Each row of regions is
+   * labeled in parallel and the rows are then joined along their seams.
+   */
+  public static List<Deposit> find(WorldTiles tiles, TilePredicate predicate) {
+    Band[] bands = new Band[tiles.getRegionsHigh()];
+    ForkJoinPool.commonPool().invoke(new LabelTask(tiles, predicate, bands, 0, bands.length));
+
+    int[] offsets = new int[bands.length];
+    int componentCount = 0;
+    for (int i = 0; i < bands.length; i++) {
+      offsets[i] = componentCount;
+      componentCount += bands[i].stats.size;
+    }
+
+    UnionFind components = new UnionFind(componentCount);
+    for (int i = 0; i + 1 < bands.length; i++) {
+      int[] top = bands[i].topRow;
+      int[] bottom = bands[i + 1].bottomRow;
+      if (top == null || bottom == null) {
+        continue;
+      }
+      for (int x = 0; x < top.length; x++) {
+        if (top[x] >= 0 && bottom[x] >= 0) {
+          components.union(offsets[i] + top[x], offsets[i + 1] + bottom[x]);
+        }
+      }
+    }
+
+    Stats merged = new Stats(componentCount);
+    int[] mergedIndex = new int[componentCount];
+    for (int i = 0; i < bands.length; i++) {
+      Stats stats = bands[i].stats;
+      for (int c = 0; c < stats.size; c++) {
+        int root = components.find(offsets[i] + c);
+        if (root == offsets[i] + c) {
+          mergedIndex[root] = merged.add();
+        }
+      }
+    }
+    for (int i = 0; i < bands.length; i++) {
+      Stats stats = bands[i].stats;
+      for (int c = 0; c < stats.size; c++) {
+        merged.merge(mergedIndex[components.find(offsets[i] + c)], stats, c);
+      }
+    }
+
+    List<Deposit> deposits = new ArrayList<>(merged.size);
+    for (int c = 0; c < merged.size; c++) {
+      deposits.add(merged.toDeposit(c, tiles.getWidth()));
+    }
+    Collections.sort(deposits, BY_SIZE);
+    return deposits;
+  }
+
+  public static class Deposit {
+
+    /** Number of tiles. */
+    public final int area;
+    /** Center of mass, in tile coordinates. */
+    public final float centerX, centerY;
+    /** Bounding box size, in tiles. */
+    public final int width, height;
+
+    private Deposit(int area, float centerX, float centerY, int width, int height) {
+      this.area = area;
+      this.centerX = centerX;
+      this.centerY = centerY;
+      this.width = width;
+      this.height = height;
+    }
+
+    private double distanceSquaredTo(int x, int y, int worldWidth) {
+      double dx = Math.abs(centerX - x);
+      dx = Math.min(dx, worldWidth - dx);
+      double dy = centerY - y;
+      return dx * dx + dy * dy;
+    }
+
+    @Override
+    public String toString() {
+      return area + " tiles at (" + (int) centerX + ", " + (int) centerY + ")";
+    }
+  }
+
+  /**
+   * The components of one row of regions.
+   */
+  private static class Band {
+    final Stats stats;
+    // Component of each tile in the top and bottom row of the band, -1 for tiles that don't
+    // match, or null if the band has no components
+    final int[] topRow, bottomRow;
+
+    Band(Stats stats, int[] topRow, int[] bottomRow) {
+      this.stats = stats;
+      this.topRow = topRow;
+      this.bottomRow = bottomRow;
+    }
+  }
+
+  /**
+   * Per-component accumulators, in parallel primitive arrays. X coordinates are also
+   * accumulated shifted by half the world width, so that a deposit that crosses the left and
+   * right edges of the world can be measured in whichever frame it doesn't cross.
+   */
+  private static class Stats {
+    int size;
+    int[] area;
+    long[] sumX, sumShiftedX, sumY;
+    int[] minX, maxX, minShiftedX, maxShiftedX, minY, maxY;
+
+    Stats(int capacity) {
+      capacity = Math.max(capacity, 1);
+      area = new int[capacity];
+      sumX = new long[capacity];
+      sumShiftedX = new long[capacity];
+      sumY = new long[capacity];
+      minX = new int[capacity];
+      maxX = new int[capacity];
+      minShiftedX = new int[capacity];
+      maxShiftedX = new int[capacity];
+      minY = new int[capacity];
+      maxY = new int[capacity];
+    }
+
+    int add() {
+      if (size == area.length) {
+        int capacity = size * 2;
+        area = Arrays.copyOf(area, capacity);
+        sumX = Arrays.copyOf(sumX, capacity);
+        sumShiftedX = Arrays.copyOf(sumShiftedX, capacity);
+        sumY = Arrays.copyOf(sumY, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        minShiftedX = Arrays.copyOf(minShiftedX, capacity);
+        maxShiftedX = Arrays.copyOf(maxShiftedX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+      }
+      minX[size] = Integer.MAX_VALUE;
+      minShiftedX[size] = Integer.MAX_VALUE;
+      minY[size] = Integer.MAX_VALUE;
+      maxX[size] = Integer.MIN_VALUE;
+      maxShiftedX[size] = Integer.MIN_VALUE;
+      maxY[size] = Integer.MIN_VALUE;
+      return size++;
+    }
+
+    void addTile(int c, int x, int shiftedX, int y) {
+      area[c]++;
+      sumX[c] += x;
+      sumShiftedX[c] += shiftedX;
+      sumY[c] += y;
+      minX[c] = Math.min(minX[c], x);
+      maxX[c] = Math.max(maxX[c], x);
+      minShiftedX[c] = Math.min(minShiftedX[c], shiftedX);
+      maxShiftedX[c] = Math.max(maxShiftedX[c], shiftedX);
+      minY[c] = Math.min(minY[c], y);
+      maxY[c] = Math.max(maxY[c], y);
+    }
+
+    void merge(int c, Stats other, int o) {
+      area[c] += other.area[o];
+      sumX[c] += other.sumX[o];
+      sumShiftedX[c] += other.sumShiftedX[o];
+      sumY[c] += other.sumY[o];
+      minX[c] = Math.min(minX[c], other.minX[o]);
+      maxX[c] = Math.max(maxX[c], other.maxX[o]);
+      minShiftedX[c] = Math.min(minShiftedX[c], other.minShiftedX[o]);
+      maxShiftedX[c] = Math.max(maxShiftedX[c], other.maxShiftedX[o]);
+      minY[c] = Math.min(minY[c], other.minY[o]);
+      maxY[c] = Math.max(maxY[c], other.maxY[o]);
+    }
+
+    Deposit toDeposit(int c, int worldWidth) {
+      float centerY = (float) sumY[c] / area[c];
+      int height = maxY[c] - minY[c] + 1;
+      int width = maxX[c] - minX[c] + 1;
+      int shiftedWidth = maxShiftedX[c] - minShiftedX[c] + 1;
+      if (shiftedWidth < width) {
+        float centerX = (float) sumShiftedX[c] / area[c] - worldWidth / 2;
+        if (centerX < 0) {
+          centerX += worldWidth;
+        }
+        return new Deposit(area[c], centerX, centerY, shiftedWidth, height);
+      }
+      return new Deposit(area[c], (float) sumX[c] / area[c], centerY, width, height);
+    }
+  }
+
+  private static class UnionFind {
+    private final int[] parent;
+
+    UnionFind(int size) {
+      parent = new int[size];
+      for (int i = 0; i < size; i++) {
+        parent[i] = i;
+      }
+    }
+
+    int find(int i) {
+      while (parent[i] != i) {
+        parent[i] = parent[parent[i]];
+        i = parent[i];
+      }
+      return i;
+    }
+
+    void union(int a, int b) {
+      a = find(a);
+      b = find(b);
+      // keep the smaller label as the root, so roots are the first label of their component
+      if (a < b) {
+        parent[b] = a;
+      } else if (b < a) {
+        parent[a] = b;
+      }
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private static class LabelTask extends RecursiveAction {
+
+    private final WorldTiles tiles;
+    private final TilePredicate predicate;
+    private final Band[] bands;
+    private final int start, end;
+
+    LabelTask(WorldTiles tiles, TilePredicate predicate, Band[] bands, int start, int end) {
+      this.tiles = tiles;
+      this.predicate = predicate;
+      this.bands = bands;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > 1) {
+        int mid = (start + end) >>> 1;
+        invokeAll(
+            new LabelTask(tiles, predicate, bands, start, mid),
+            new LabelTask(tiles, predicate, bands, mid, end));
+        return;
+      }
+      bands[start] = label(start);
+    }
+
+    private Band label(int regionY) {
+      int width = tiles.getWidth();
+      int minY = regionY * 32;
+      int maxY = Math.min(minY + 32, tiles.getHeight());
+
+      boolean[] regionMayMatch = new boolean[tiles.getRegionsWide()];
+      boolean anyMayMatch = false;
+      for (int regionX = 0; regionX < regionMayMatch.length; regionX++) {
+        short[] materials = tiles.getRegionMaterials(regionX, regionY);
+        regionMayMatch[regionX] = materials != null
+            && predicate.mayMatchRegion(materials, tiles.getRegionMods(regionX, regionY));
+        anyMayMatch |= regionMayMatch[regionX];
+      }
+      if (!anyMayMatch) {
+        return new Band(new Stats(0), null, null);
+      }
+
+      // Provisional labels, joined through the union find as neighbors are found
+      int[] labels = new int[(maxY - minY) * width];
+      UnionFind provisional = new UnionFind(labels.length);
+      int labelCount = 0;
+      for (int y = minY; y < maxY; y++) {
+        int row = (y - minY) * width;
+        for (int x = 0; x < width; x++) {
+          int i = row + x;
+          if (!regionMayMatch[x >> 5] || !predicate.matches(tiles, y * width + x)) {
+            labels[i] = -1;
+            continue;
+          }
+          int left = x > 0 ? labels[i - 1] : -1;
+          int below = y > minY ? labels[i - width] : -1;
+          if (left >= 0) {
+            labels[i] = left;
+            if (below >= 0) {
+              provisional.union(left, below);
+            }
+          } else if (below >= 0) {
+            labels[i] = below;
+          } else {
+            labels[i] = labelCount++;
+          }
+        }
+        // the world wraps around horizontally
+        if (width > 1 && labels[row] >= 0 && labels[row + width - 1] >= 0) {
+          provisional.union(labels[row], labels[row + width - 1]);
+        }
+      }
+
+      Stats stats = new Stats(16);
+      int[] component = new int[labelCount];
+      for (int label = 0; label < labelCount; label++) {
+        component[label] = provisional.find(label) == label ? stats.add() : -1;
+      }
+      for (int label = 0; label < labelCount; label++) {
+        component[label] = component[provisional.find(label)];
+      }
+
+      int halfWidth = width / 2;
+      for (int y = minY; y < maxY; y++) {
+        int row = (y - minY) * width;
+        for (int x = 0; x < width; x++) {
+          int label = labels[row + x];
+          if (label >= 0) {
+            int c = component[label];
+            labels[row + x] = c;
+            int shiftedX = x + halfWidth;
+            if (shiftedX >= width) {
+              shiftedX -= width;
+            }
+            stats.addTile(c, x, shiftedX, y);
+          }
+        }
+      }
+
+      int[] bottomRow = Arrays.copyOfRange(labels, 0, width);
+      int[] topRow = Arrays.copyOfRange(labels, labels.length - width, labels.length);
+      return new Band(stats, topRow, bottomRow);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package starbound.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import starbound.model.World.WorldTiles;
+
+/**
+ * The dungeons of a world, from the dungeon ids of its tiles. The tiles of each dungeon are
+ * counted and boxed per region while the regions are decoded, so the index is built without
+ * scanning the tiles again.
+ */
+public class DungeonIndex {
+
+  // Ids from here up mark special areas rather than generated dungeons
+  private static final int FIRST_META_DUNGEON = 65520;
+  private static final int PROTECTED_ZERO_G_DUNGEON = 65524;
+  private static final int ZERO_G_DUNGEON = 65525;
+  private static final int DESTROYED_BLOCK_DUNGEON = 65531;
+  private static final int CONSTRUCTION_DUNGEON = 65532;
+  private static final int BIOME_MICRO_DUNGEON = 65533;
+  private static final int SPAWN_DUNGEON = 65534;
+
+  /**
+   * The bounding box of a dungeon's tiles within one region, in tile coordinates.
+   */
+  public static class Extent {
+
+    public final int dungeonId;
+    public final int minX, minY, maxX, maxY;
+    public final int tileCount;
+
+    Extent(int dungeonId, int minX, int minY, int maxX, int maxY, int tileCount) {
+      this.dungeonId = dungeonId;
+      this.minX = minX;
+      this.minY = minY;
+      this.maxX = maxX;
+      this.maxY = maxY;
+      this.tileCount = tileCount;
+    }
+  }
+
+  public static class Dungeon {
+
+    public final int id;
+    public final int tileCount;
+    public final List<Extent> extents;
+    // The extent with the most tiles, which is where the dungeon is centered
+    private final Extent largest;
+
+    private Dungeon(int id, List<Extent> extents) {
+      this.id = id;
+      this.extents = Collections.unmodifiableList(extents);
+      int tileCount = 0;
+      Extent largest = null;
+      for (Extent extent : extents) {
+        tileCount += extent.tileCount;
+        if (largest == null || extent.tileCount > largest.tileCount) {
+          largest = extent;
+        }
+      }
+      this.tileCount = tileCount;
+      this.largest = largest;
+    }
+
+    /**
+     * Returns whether this is a special area, such as the spawn area or player construction,
+     * rather than a generated dungeon.
+     */
+    public boolean isMeta() {
+      return id >= FIRST_META_DUNGEON;
+    }
+
+    public int getCenterX() {
+      return (largest.minX + largest.maxX) / 2;
+    }
+
+    public int getCenterY() {
+      return (largest.minY + largest.maxY) / 2;
+    }
+
+    public String getName() {
+      switch (id) {
+      case PROTECTED_ZERO_G_DUNGEON:
+        return "Protected zero gravity";
+      case ZERO_G_DUNGEON:
+        return "Zero gravity";
+      case DESTROYED_BLOCK_DUNGEON:
+        return "Destroyed blocks";
+      case CONSTRUCTION_DUNGEON:
+        return "Construction";
+      case BIOME_MICRO_DUNGEON:
+        return "Biome micro dungeons";
+      case SPAWN_DUNGEON:
+        return "Spawn";
+      default:
+        return "Dungeon " + id;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return getName() + " (" + tileCount + " tiles) at " + getCenterX() + ", " + getCenterY();
+    }
+  }
+
+  static DungeonIndex create(WorldTiles tiles) {
+    Map<Integer, List<Extent>> extentsById = new TreeMap<>();
+    for (int regionY = 0; regionY < tiles.getRegionsHigh(); regionY++) {
+      for (int regionX = 0; regionX < tiles.getRegionsWide(); regionX++) {
+        Extent[] extents = tiles.getRegionDungeons(regionX, regionY);
+        if (extents == null) {
+          continue;
+        }
+        for (Extent extent : extents) {
+          List<Extent> list = extentsById.get(extent.dungeonId);
+          if (list == null) {
+            list = new ArrayList<>();
+            extentsById.put(extent.dungeonId, list);
+          }
+          list.add(extent);
+        }
+      }
+    }
+
+    Map<Integer, Dungeon> dungeons = new TreeMap<>();
+    for (Map.Entry<Integer, List<Extent>> entry : extentsById.entrySet()) {
+      dungeons.put(entry.getKey(), new Dungeon(entry.getKey(), entry.getValue()));
+    }
+    return new DungeonIndex(dungeons);
+  }
+
+  private final Map<Integer, Dungeon> dungeons;
+
+  private DungeonIndex(Map<Integer, Dungeon> dungeons) {
+    this.dungeons = Collections.unmodifiableMap(dungeons);
+  }
+
+  /**
+   * Returns the dungeon with the given id, or null if no tile has it.
+   */
+  public Dungeon get(int id) {
+    return dungeons.get(id);
+  }
+
+  /**
+   * Returns the dungeons ordered by id.
+   */
+  public Collection<Dungeon> getDungeons() {
+    return dungeons.values();
+  }
+}
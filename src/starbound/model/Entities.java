@@ -1,14 +1,18 @@
 package starbound.model;
 
+import starbound.io.SbonPath;
 import starbound.io.VersionedJson;
 
 public class Entities {
 
+  public static final SbonPath PARAMETERS_OWNER = SbonPath.compile("parameters/owner");
+  public static final SbonPath ITEM_CONTENT = SbonPath.compile("item/content");
+
   public static boolean isOwnedChest(VersionedJson entity) {
     return 
         entity.identifier.equals("ObjectEntity") &&
         entity.data.containsKey("items") &&
-        (entity.data.getByPath("parameters/owner") != null ||
+        (entity.data.getByPath(PARAMETERS_OWNER) != null ||
         entity.data.getByKey("name").asString().contains("shiplocker"));
   }
 
@@ -0,0 +1,96 @@
+package starbound.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import starbound.model.World.WorldTiles;
+
+/**
+ * The amount of each liquid in a world. The volume of a tile is its liquid level, 1 for a full
+ * tile. The volumes are summed per region while the regions are decoded, so the totals don't
+ * need another pass over the tiles.
+ */
+public class LiquidStatistics {
+
+  /**
+   * The tiles and volume of one liquid within one region.
+   */
+  static class RegionVolume {
+
+    final int liquidId;
+    final int tileCount;
+    final double volume;
+
+    RegionVolume(int liquidId, int tileCount, double volume) {
+      this.liquidId = liquidId;
+      this.tileCount = tileCount;
+      this.volume = volume;
+    }
+  }
+
+  static LiquidStatistics create(WorldTiles tiles) {
+    int[] tileCounts = new int[1 << 8];
+    double[] volumes = new double[1 << 8];
+    for (int regionY = 0; regionY < tiles.getRegionsHigh(); regionY++) {
+      for (int regionX = 0; regionX < tiles.getRegionsWide(); regionX++) {
+        RegionVolume[] regionVolumes = tiles.getRegionLiquids(regionX, regionY);
+        if (regionVolumes == null) {
+          continue;
+        }
+        for (RegionVolume regionVolume : regionVolumes) {
+          tileCounts[regionVolume.liquidId] += regionVolume.tileCount;
+          volumes[regionVolume.liquidId] += regionVolume.volume;
+        }
+      }
+    }
+    return new LiquidStatistics(tileCounts, volumes);
+  }
+
+  /**
+   * Finds the connected bodies of a liquid, largest first.
+   */
+  public static List<Deposits.Deposit> findBodies(WorldTiles tiles, int liquidId) {
+    return Deposits.find(tiles, TileSearch.liquids(liquidId));
+  }
+
+  private final int[] tileCounts;
+  private final double[] volumes;
+
+  private LiquidStatistics(int[] tileCounts, double[] volumes) {
+    this.tileCounts = tileCounts;
+    this.volumes = volumes;
+  }
+
+  /**
+   * Returns the ids of the liquids in the world, most voluminous first.
+   */
+  public int[] getLiquidIds() {
+    Integer[] ids = new Integer[volumes.length];
+    int n = 0;
+    for (int i = 0; i < volumes.length; i++) {
+      if (tileCounts[i] > 0) {
+        ids[n++] = i;
+      }
+    }
+    Arrays.sort(ids, 0, n, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Double.compare(volumes[b], volumes[a]);
+      }
+    });
+    int[] sorted = new int[n];
+    for (int i = 0; i < n; i++) {
+      sorted[i] = ids[i];
+    }
+    return sorted;
+  }
+
+  public int getTileCount(int liquidId) {
+    return tileCounts[liquidId];
+  }
+
+  public double getVolume(int liquidId) {
+    return volumes[liquidId];
+  }
+}
@@ -0,0 +1,90 @@
+package starbound.model;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import starbound.io.SBAsset6;
+import starbound.io.SBAsset6.AssetNode;
+import starbound.io.SBAsset6.AssetParser;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class Liquids {
+
+  private static final Color DEFAULT_COLOR = Color.BLUE;
+
+  public static Liquids create(SBAsset6 assets) {
+
+    List<AssetNode> liquidFiles = assets.getDirectory("liquids").findFiles(".liquid");
+
+    List<Liquid> parsed = assets.parseAll(liquidFiles, new AssetParser<Liquid>() {
+      @Override
+      public Liquid parse(AssetNode node, ByteBuffer liquidBytes) {
+        JsonObject e = new JsonParser().parse(SBAsset6.toText(liquidBytes)).getAsJsonObject();
+        int id = e.get("liquidId").getAsInt();
+        String name = e.get("name").getAsString();
+
+        Color color;
+        JsonElement colorElement = e.get("color");
+        if (colorElement == null) {
+          color = DEFAULT_COLOR;
+        } else {
+          JsonArray colorArray = colorElement.getAsJsonArray();
+          color = new Color(
+              colorArray.get(0).getAsInt(),
+              colorArray.get(1).getAsInt(),
+              colorArray.get(2).getAsInt());
+        }
+
+        return new Liquid(id, name, color);
+      }
+    });
+
+    Map<Integer, Liquid> liquids = new HashMap<>();
+    for (Liquid liquid : parsed) {
+      liquids.put(liquid.id, liquid);
+    }
+    return new Liquids(liquids);
+  }
+
+  public static class Liquid {
+    public final int id;
+    public final String name;
+    public final Color color;
+
+    public Liquid(int id, String name, Color color) {
+      this.id = id;
+      this.name = name;
+      this.color = color;
+    }
+
+    @Override
+    public String toString() {
+      return "Liquid " + id + ": " + name;
+    }
+  }
+
+  private final Map<Integer, Liquid> liquids;
+
+  private Liquids(Map<Integer, Liquid> liquids) {
+    this.liquids = liquids;
+  }
+
+  public Liquid get(int liquidId) {
+    return liquids.get(liquidId);
+  }
+
+  /**
+   * Returns the color to draw the liquid with, even for liquids missing from the assets.
+   */
+  public Color getColor(int liquidId) {
+    Liquid liquid = liquids.get(liquidId);
+    return liquid == null ? DEFAULT_COLOR : liquid.color;
+  }
+}
@@ -1,13 +1,14 @@
 package starbound.model;
 
 import java.awt.Color;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import starbound.io.SBAsset6;
 import starbound.io.SBAsset6.AssetNode;
+import starbound.io.SBAsset6.AssetParser;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -18,33 +19,47 @@ public class Materials {
 
   public static Materials create(SBAsset6 assets) {
 
-    List<AssetNode> materialFiles = assets.getDirectory("tiles").findFiles(".material");
+    Map<Integer, Material> materials =
+        read(assets, ".material", "materialId", "materialName");
+    // Mods are drawn over materials, ores are mods
+    Map<Integer, Material> mods = read(assets, ".matmod", "modId", "modName");
 
-    Map<Integer, Material> materials = new HashMap<>();
-    JsonParser parser = new JsonParser();
-    for (AssetNode matterialFile : materialFiles) {
-      byte[] materialBytes = assets.get(matterialFile);
-      JsonObject e = parser.parse(new String(materialBytes, Charset.forName("utf-8")))
-          .getAsJsonObject();
-      int id = e.get("materialId").getAsInt();
-      String name = e.get("materialName").getAsString();
-
-      Color color;
-      JsonElement particleColor = e.get("particleColor");
-      if (particleColor == null) {
-        color = null;
-      } else {
-        JsonArray colorArray = particleColor.getAsJsonArray();
-        color = new Color(
-            colorArray.get(0).getAsInt(),
-            colorArray.get(1).getAsInt(),
-            colorArray.get(2).getAsInt());
+    return new Materials(materials, mods);
+  }
+
+  private static Map<Integer, Material> read(
+      SBAsset6 assets, String suffix, String idKey, String nameKey) {
+
+    List<AssetNode> materialFiles = assets.getDirectory("tiles").findFiles(suffix);
+
+    List<Material> parsed = assets.parseAll(materialFiles, new AssetParser<Material>() {
+      @Override
+      public Material parse(AssetNode node, ByteBuffer materialBytes) {
+        JsonObject e = new JsonParser().parse(SBAsset6.toText(materialBytes)).getAsJsonObject();
+        int id = e.get(idKey).getAsInt();
+        String name = e.get(nameKey).getAsString();
+
+        Color color;
+        JsonElement particleColor = e.get("particleColor");
+        if (particleColor == null) {
+          color = null;
+        } else {
+          JsonArray colorArray = particleColor.getAsJsonArray();
+          color = new Color(
+              colorArray.get(0).getAsInt(),
+              colorArray.get(1).getAsInt(),
+              colorArray.get(2).getAsInt());
+        }
+
+        return new Material(id, name, color);
       }
+    });
 
-      materials.put(id, new Material(id, name, color));
+    Map<Integer, Material> materials = new HashMap<>();
+    for (Material material : parsed) {
+      materials.put(material.id, material);
     }
-
-    return new Materials(materials);
+    return materials;
   }
 
   public static class Material {
@@ -65,12 +80,41 @@ public class Materials {
   }
 
   private final Map<Integer, Material> materials;
+  private final Map<Integer, Material> mods;
 
-  private Materials(Map<Integer, Material> materials) {
+  private Materials(Map<Integer, Material> materials, Map<Integer, Material> mods) {
     this.materials = materials;
+    this.mods = mods;
   }
   
   public Material get(int materialId) {
     return materials.get(materialId);
   }
+
+  public Material getMod(int modId) {
+    return mods.get(modId);
+  }
+
+  /**
+   * Returns the material with the given name, or null if there isn't one.
+   */
+  public Material findMaterial(String name) {
+    return findByName(materials, name);
+  }
+
+  /**
+   * Returns the mod with the given name, or null if there isn't one.
+   */
+  public Material findMod(String name) {
+    return findByName(mods, name);
+  }
+
+  private static Material findByName(Map<Integer, Material> materials, String name) {
+    for (Material material : materials.values()) {
+      if (material.name.equalsIgnoreCase(name)) {
+        return material;
+      }
+    }
+    return null;
+  }
 }
@@ -0,0 +1,216 @@
+package starbound.model;
+
+import java.util.Arrays;
+
+/**
+ * Finds routes through a {@link WalkabilityGrid} with A*. Routes move between neighboring
+ * passable tiles, including diagonally as long as no corner is cut, and may cross the left and
+ * right edges of the world. Gravity and jumping are not taken into account, so a route shows
+ * the way through the terrain rather than exact movement.
+ *
+ * <p>A pathfinder reuses its buffers between searches and must not be used from several
+ * threads at once.
+ */
+public class Pathfinder {
+
+  private static final int STRAIGHT_COST = 10;
+  private static final int DIAGONAL_COST = 14;
+  // Maximum distance to look for a passable tile when the start or goal is inside terrain
+  private static final int SNAP_RADIUS = 6;
+
+  private static final int[] DX = {1, -1, 0, 0, 1, 1, -1, -1};
+  private static final int[] DY = {0, 0, 1, -1, 1, -1, 1, -1};
+
+  /**
+   * A route as a list of tiles, from the start to the goal.
+   */
+  public static class Route {
+
+    private final int[] xs, ys;
+
+    private Route(int[] xs, int[] ys) {
+      this.xs = xs;
+      this.ys = ys;
+    }
+
+    public int size() {
+      return xs.length;
+    }
+
+    public int getX(int i) {
+      return xs[i];
+    }
+
+    public int getY(int i) {
+      return ys[i];
+    }
+  }
+
+  private final WalkabilityGrid grid;
+  private final int width, height;
+
+  // Per tile: the cost to reach it shifted left 3 bits, plus the direction it was reached from.
+  // -1 for tiles that were not reached.
+  private final int[] reached;
+  private long[] open = new long[1024];
+  private int openSize;
+
+  public Pathfinder(WalkabilityGrid grid) {
+    this.grid = grid;
+    this.width = grid.getWidth();
+    this.height = grid.getHeight();
+    this.reached = new int[width * height];
+  }
+
+  /**
+   * Returns the shortest route between the tiles, or null if there is none. The start and goal
+   * are moved to the nearest passable tile if they are inside terrain.
+   */
+  public Route findRoute(int startX, int startY, int goalX, int goalY) {
+    int start = snap(startX, startY);
+    int goal = snap(goalX, goalY);
+    if (start < 0 || goal < 0) {
+      return null;
+    }
+    goalX = goal % width;
+    goalY = goal / width;
+
+    Arrays.fill(reached, -1);
+    openSize = 0;
+    reached[start] = 0;
+    push(heuristic(start % width, start / width, goalX, goalY), start);
+
+    while (openSize > 0) {
+      long entry = pop();
+      int index = (int) entry;
+      int x = index % width;
+      int y = index / width;
+      int cost = reached[index] >>> 3;
+      if ((int) (entry >>> 32) > cost + heuristic(x, y, goalX, goalY)) {
+        // a cheaper way to this tile was found after this entry was queued
+        continue;
+      }
+      if (index == goal) {
+        return buildRoute(start, goal);
+      }
+
+      for (int direction = 0; direction < DX.length; direction++) {
+        int nx = grid.wrapX(x + DX[direction]);
+        int ny = y + DY[direction];
+        if (!grid.isPassable(nx, ny)) {
+          continue;
+        }
+        int stepCost = STRAIGHT_COST;
+        if (direction >= 4) {
+          // don't cut corners
+          if (!grid.isPassable(nx, y) || !grid.isPassable(x, ny)) {
+            continue;
+          }
+          stepCost = DIAGONAL_COST;
+        }
+        int next = ny * width + nx;
+        int nextCost = cost + stepCost;
+        if (reached[next] < 0 || nextCost < reached[next] >>> 3) {
+          reached[next] = nextCost << 3 | direction;
+          push(nextCost + heuristic(nx, ny, goalX, goalY), next);
+        }
+      }
+    }
+    return null;
+  }
+
+  private Route buildRoute(int start, int goal) {
+    int length = 1;
+    for (int index = goal; index != start; index = previous(index)) {
+      length++;
+    }
+    int[] xs = new int[length];
+    int[] ys = new int[length];
+    int index = goal;
+    for (int i = length - 1; i >= 0; i--) {
+      xs[i] = index % width;
+      ys[i] = index / width;
+      if (i > 0) {
+        index = previous(index);
+      }
+    }
+    return new Route(xs, ys);
+  }
+
+  private int previous(int index) {
+    int direction = reached[index] & 0b111;
+    int x = grid.wrapX(index % width - DX[direction]);
+    int y = index / width - DY[direction];
+    return y * width + x;
+  }
+
+  /**
+   * Octile distance, with the horizontal distance measured the shorter way around the world.
+   */
+  private int heuristic(int x, int y, int goalX, int goalY) {
+    int dx = Math.abs(x - goalX);
+    dx = Math.min(dx, width - dx);
+    int dy = Math.abs(y - goalY);
+    return STRAIGHT_COST * Math.max(dx, dy) + (DIAGONAL_COST - STRAIGHT_COST) * Math.min(dx, dy);
+  }
+
+  /**
+   * Returns the passable tile nearest to the given one, or -1 if there is none nearby.
+   */
+  private int snap(int x, int y) {
+    for (int r = 0; r <= SNAP_RADIUS; r++) {
+      for (int dy = -r; dy <= r; dy++) {
+        for (int dx = -r; dx <= r; dx++) {
+          if (Math.max(Math.abs(dx), Math.abs(dy)) != r) {
+            continue;
+          }
+          if (grid.isPassable(x + dx, y + dy)) {
+            return (y + dy) * width + grid.wrapX(x + dx);
+          }
+        }
+      }
+    }
+    return -1;
+  }
+
+  // Binary min-heap of (priority << 32 | tile index)
+
+  private void push(int priority, int index) {
+    if (openSize == open.length) {
+      open = Arrays.copyOf(open, openSize * 2);
+    }
+    long entry = (long) priority << 32 | index;
+    int i = openSize++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (open[parent] <= entry) {
+        break;
+      }
+      open[i] = open[parent];
+      i = parent;
+    }
+    open[i] = entry;
+  }
+
+  private long pop() {
+    long top = open[0];
+    long last = open[--openSize];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= openSize) {
+        break;
+      }
+      if (child + 1 < openSize && open[child + 1] < open[child]) {
+        child++;
+      }
+      if (open[child] >= last) {
+        break;
+      }
+      open[i] = open[child];
+      i = child;
+    }
+    open[i] = last;
+    return top;
+  }
+}
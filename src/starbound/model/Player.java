@@ -9,11 +9,29 @@ import java.util.List;
 import java.util.Map;
 
 import starbound.io.Sbon;
+import starbound.io.SbonPath;
+import starbound.io.SbonProjection;
 import starbound.io.StarboundFiles;
 import starbound.io.VersionedJson;
 
 public class Player {
 
+  private static final SbonPath IDENTITY_NAME = SbonPath.compile("identity/name");
+  private static final SbonPath BOOKMARKS = SbonPath.compile("bookmarks/0/1");
+  private static final SbonPath MAIN_BAG = SbonPath.compile("inventory/mainBag");
+  private static final SbonPath POSITION = SbonPath.compile("movementController/position");
+  private static final SbonPath REVIVE_WARP_WORLD = SbonPath.compile("reviveWarp/world");
+
+  // The only parts of the player and client context files that are decoded when loading players
+  private static final SbonProjection PLAYER_PROJECTION = SbonProjection.of(
+      "uuid", IDENTITY_NAME.toString(), BOOKMARKS.toString(), POSITION.toString());
+  private static final SbonProjection CLIENT_CONTEXT_PROJECTION =
+      SbonProjection.of(REVIVE_WARP_WORLD.toString());
+  private static final SbonProjection MAIN_BAG_PROJECTION =
+      SbonProjection.of(MAIN_BAG.toString());
+  private static final SbonProjection POSITION_PROJECTION =
+      SbonProjection.of(POSITION.toString());
+
   public static List<Player> loadPlayers(StarboundFiles starboundFiles) throws IOException {
     List<Player> players = new ArrayList<>();
     List<File> playerFiles = starboundFiles.findPlayerFiles();
@@ -35,22 +53,30 @@ public class Player {
   }
   
   public static Player load(File playerFile, File clientContextFile) throws IOException {
+    // Player files are large but only a few of their values are used, so skip everything else
     return new Player(
-        VersionedJson.readSbvj01(playerFile).data,
-        VersionedJson.readSbvj01(clientContextFile).data);
+        playerFile,
+        VersionedJson.mapSbvj01(playerFile, PLAYER_PROJECTION).data,
+        VersionedJson.mapSbvj01(clientContextFile, CLIENT_CONTEXT_PROJECTION).data);
   }
   
   public final String id;
   public final String name;
   
+  /**
+   * The uuid, identity name, bookmarks and position of the player. The rest of the player file is
+   * not decoded.
+   */
   public final Sbon playerData;
   private final Sbon clientContext;
+  private final File playerFile;
 
-  private Player(Sbon playerData, Sbon clientContext) {
+  private Player(File playerFile, Sbon playerData, Sbon clientContext) {
+    this.playerFile = playerFile;
     this.playerData = playerData;
     this.clientContext = clientContext;
     this.id = playerData.getByKey("uuid").asString();
-    this.name = playerData.getByPath("identity/name").asString();
+    this.name = playerData.getByPath(IDENTITY_NAME).asString();
   }
 
   /**
@@ -59,7 +85,7 @@ public class Player {
   public Map<String, String> getBookmarks() {
     Map<String, String> bookmarks = new HashMap<>();
     
-    Sbon bookmarkData = playerData.getByPath("bookmarks/0/1");
+    Sbon bookmarkData = playerData.getByPath(BOOKMARKS);
     for (int i = 0; i < bookmarkData.size(); i++) {
       Sbon bookmark = bookmarkData.getByIndex(i);
       bookmarks.put(
@@ -78,19 +104,32 @@ public class Player {
     return getSavedLocationInCurrentWorld(playerData);
   }
   
-  public List<Sbon> getMainInventory() {
-    return playerData.getByPath("inventory/mainBag").asSbonList();
+  /**
+   * Reads the main inventory from the player file, which is not decoded when loading players.
+   */
+  public List<Sbon> getMainInventory() throws IOException {
+    Sbon data = VersionedJson.mapSbvj01(playerFile, MAIN_BAG_PROJECTION).data;
+    return data.getByPath(MAIN_BAG).asSbonList();
   }
   
   public static WorldId getCurrentWorld(Sbon clientContext) {
-    Sbon world = clientContext.getByKey("reviveWarp/world");
+    Sbon world = clientContext.getByPath(REVIVE_WARP_WORLD);
     return WorldId.fromId(world.asString());
   }
 
+  /**
+   * Reads the saved location from a player file, decoding nothing but the position.
+   */
+  public static Point2D.Float readSavedLocationInCurrentWorld(File playerFile)
+      throws IOException {
+    Sbon data = VersionedJson.mapSbvj01(playerFile, POSITION_PROJECTION).data;
+    return getSavedLocationInCurrentWorld(data);
+  }
+
   public static Point2D.Float getSavedLocationInCurrentWorld(Sbon playerData) {
-    Sbon position = playerData.getByPath("movementController/position");
-    float x = position.getByIndex(0).asFloat();
-    float y = position.getByIndex(1).asFloat();
+    double[] position = playerData.getByPath(POSITION).asDoubleArray();
+    float x = (float) position[0];
+    float y = (float) position[1];
     return new Point2D.Float(x, y);
   }
 }
@@ -0,0 +1,149 @@
+package starbound.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import starbound.io.StarboundFiles;
+import util.DirectoryWatcher;
+import util.DirectoryWatcher.EventType;
+import util.DirectoryWatcher.FileWatchListener;
+
+/**
+ * Keeps the players and their bookmarks in memory between world loads. The player files and the
+ * client context files are watched, and when one of them changed, only the players whose player
+ * or client context file changed size or modification time are loaded again. Until then, the
+ * players are returned without touching the disk.
+ */
+public class PlayerRegistry {
+
+  private static class Entry {
+    final long playerSize, playerModified;
+    final long contextSize, contextModified;
+    final Player player;
+    final Map<String, String> bookmarks;
+
+    Entry(File playerFile, File contextFile) throws IOException {
+      // read before loading, so that a change while loading is noticed the next time
+      this.playerSize = playerFile.length();
+      this.playerModified = playerFile.lastModified();
+      this.contextSize = contextFile.length();
+      this.contextModified = contextFile.lastModified();
+      this.player = Player.load(playerFile, contextFile);
+      this.bookmarks = Collections.unmodifiableMap(player.getBookmarks());
+    }
+
+    boolean isCurrent(File playerFile, File contextFile) {
+      return playerFile.length() == playerSize && playerFile.lastModified() == playerModified
+          && contextFile.length() == contextSize && contextFile.lastModified() == contextModified;
+    }
+  }
+
+  private final StarboundFiles starboundFiles;
+  private Map<File, Entry> entries = new HashMap<>();
+  private List<Player> players;
+  private Map<String, Map<String, String>> bookmarks;
+  // Set by the directory watcher's thread
+  private volatile boolean dirty = true;
+
+  public PlayerRegistry(StarboundFiles starboundFiles) {
+    this.starboundFiles = starboundFiles;
+  }
+
+  /**
+   * Watches the player directory, and the client context files in the universe directory, for
+   * changes. Watches are removed by {@link DirectoryWatcher#clearWatches()}, after which this has
+   * to be called again.
+   */
+  public void watch(DirectoryWatcher directoryWatcher) throws IOException {
+    directoryWatcher.watchDirectory(
+        starboundFiles.getPlayerDirectory().toPath(), new FileWatchListener() {
+          @Override
+          public void onEvent(Path p, EventType type) {
+            dirty = true;
+          }
+        });
+    // the universe directory also has the worlds, which the game saves far more often
+    directoryWatcher.watchDirectory(
+        starboundFiles.getUniverseDirectory().toPath(), new FileWatchListener() {
+          @Override
+          public void onEvent(Path p, EventType type) {
+            if (p.getFileName().toString().endsWith(".clientcontext")) {
+              dirty = true;
+            }
+          }
+        });
+    // changes before the watch started would be missed
+    dirty = true;
+  }
+
+  /**
+   * Returns whether the players have to be checked for changes before they are returned.
+   */
+  public boolean needsRefresh() {
+    return dirty;
+  }
+
+  public synchronized List<Player> getPlayers() {
+    refreshIfDirty();
+    return players;
+  }
+
+  /**
+   * Returns the bookmarks of each player by player id, see {@link Player#getBookmarks()}.
+   */
+  public synchronized Map<String, Map<String, String>> getBookmarks() {
+    refreshIfDirty();
+    return bookmarks;
+  }
+
+  private void refreshIfDirty() {
+    if (!dirty) {
+      return;
+    }
+    // cleared first, so that changes during the refresh cause another one
+    dirty = false;
+
+    Map<String, File> contextFiles = starboundFiles.findClientContextFiles();
+    Map<File, Entry> newEntries = new LinkedHashMap<>();
+    for (File playerFile : starboundFiles.findPlayerFiles()) {
+      String playerId = playerFile.getName().replace(".player", "");
+      File contextFile = contextFiles.get(playerId);
+      if (contextFile == null) {
+        // the game may not have written it yet
+        System.out.println("Could not find player context file for player " + playerId);
+        dirty = true;
+        continue;
+      }
+
+      Entry entry = entries.get(playerFile);
+      if (entry == null || !entry.isCurrent(playerFile, contextFile)) {
+        try {
+          entry = new Entry(playerFile, contextFile);
+        } catch (IOException e) {
+          System.out.println("Could not load player file " + playerFile + ": " + e);
+          // try again the next time, the game may still have been writing it
+          dirty = true;
+          continue;
+        }
+      }
+      newEntries.put(playerFile, entry);
+    }
+    entries = newEntries;
+
+    List<Player> players = new ArrayList<>();
+    Map<String, Map<String, String>> bookmarks = new HashMap<>();
+    for (Entry entry : entries.values()) {
+      players.add(entry.player);
+      bookmarks.put(entry.player.id, entry.bookmarks);
+    }
+    this.players = Collections.unmodifiableList(players);
+    this.bookmarks = Collections.unmodifiableMap(bookmarks);
+  }
+}
@@ -0,0 +1,294 @@
+package starbound.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import starbound.model.World.WorldTiles;
+
+/**
+ * Finds the tiles of a world that match a predicate, such as every tile of an ore.
+ */
+public class TileSearch {
+
+  /**
+   * Matches individual tiles. Tiles are identified by their index, {@code y * width + x}.
+   */
+  public abstract static class TilePredicate {
+
+    /**
+     * Returns whether a region whose tiles have only the given distinct foreground materials and
+     * mods can contain a match. Regions for which this returns false are not scanned.
+     */
+    public boolean mayMatchRegion(short[] materials, short[] mods) {
+      return true;
+    }
+
+    public abstract boolean matches(WorldTiles tiles, int index);
+  }
+
+  /**
+   * Matches tiles whose foreground material is one of the given ids.
+   */
+  public static TilePredicate materials(int... materialIds) {
+    boolean[] set = toSet(materialIds);
+    return new TilePredicate() {
+      @Override
+      public boolean mayMatchRegion(short[] materials, short[] mods) {
+        return containsAny(set, materials);
+      }
+
+      @Override
+      public boolean matches(WorldTiles tiles, int index) {
+        return set[tiles.tiles[index] & 0xFFFF];
+      }
+    };
+  }
+
+  /**
+   * Matches tiles whose foreground mod is one of the given ids. Ores are mods.
+   */
+  public static TilePredicate mods(int... modIds) {
+    boolean[] set = toSet(modIds);
+    return new TilePredicate() {
+      @Override
+      public boolean mayMatchRegion(short[] materials, short[] mods) {
+        return containsAny(set, mods);
+      }
+
+      @Override
+      public boolean matches(WorldTiles tiles, int index) {
+        return set[tiles.mods[index] & 0xFFFF];
+      }
+    };
+  }
+
+  /**
+   * Matches tiles that hold one of the given liquids.
+   */
+  public static TilePredicate liquids(int... liquidIds) {
+    boolean[] set = toSet(liquidIds);
+    return new TilePredicate() {
+      @Override
+      public boolean matches(WorldTiles tiles, int index) {
+        return set[tiles.liquids[index] & 0xFF];
+      }
+    };
+  }
+
+  /**
+   * Matches tiles that match any of the given predicates.
+   */
+  public static TilePredicate anyOf(TilePredicate... predicates) {
+    return new TilePredicate() {
+      @Override
+      public boolean mayMatchRegion(short[] materials, short[] mods) {
+        for (TilePredicate predicate : predicates) {
+          if (predicate.mayMatchRegion(materials, mods)) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public boolean matches(WorldTiles tiles, int index) {
+        for (TilePredicate predicate : predicates) {
+          if (predicate.matches(tiles, index)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  private static boolean[] toSet(int[] ids) {
+    boolean[] set = new boolean[1 << 16];
+    for (int id : ids) {
+      set[id & 0xFFFF] = true;
+    }
+    return set;
+  }
+
+  private static boolean containsAny(boolean[] set, short[] values) {
+    for (short value : values) {
+      if (set[value & 0xFFFF]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Scans the world in parallel, one region per unit of work, skipping regions that cannot
+   * match.
+   */
+  public static Matches find(WorldTiles tiles, TilePredicate predicate) {
+    int regionCount = tiles.getRegionsWide() * tiles.getRegionsHigh();
+    List<RegionMatches> regions = ForkJoinPool.commonPool().invoke(
+        new SearchTask(tiles, predicate, 0, regionCount));
+    return new Matches(regions);
+  }
+
+  /**
+   * The matching tiles of one region, which need not be connected to each other. See
+   * {@link Deposits} for connected groups of tiles.
+   */
+  public static class RegionMatches {
+
+    public final int regionX, regionY;
+    public final int minX, minY, maxX, maxY;
+    // tile indexes
+    private final int[] tiles;
+    private final int width;
+
+    private RegionMatches(int regionX, int regionY, int width, int[] tiles) {
+      this.regionX = regionX;
+      this.regionY = regionY;
+      this.width = width;
+      this.tiles = tiles;
+
+      int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+      int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+      for (int index : tiles) {
+        int x = index % width;
+        int y = index / width;
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+      }
+      this.minX = minX;
+      this.minY = minY;
+      this.maxX = maxX;
+      this.maxY = maxY;
+    }
+
+    public int size() {
+      return tiles.length;
+    }
+
+    public int getX(int i) {
+      return tiles[i] % width;
+    }
+
+    public int getY(int i) {
+      return tiles[i] / width;
+    }
+
+    public int getCenterX() {
+      return (minX + maxX) / 2;
+    }
+
+    public int getCenterY() {
+      return (minY + maxY) / 2;
+    }
+  }
+
+  public static class Matches {
+
+    public final List<RegionMatches> regions;
+    private final int[] regionStarts;
+    private final int size;
+
+    private Matches(List<RegionMatches> regions) {
+      this.regions = Collections.unmodifiableList(regions);
+      this.regionStarts = new int[regions.size()];
+      int size = 0;
+      for (int i = 0; i < regions.size(); i++) {
+        regionStarts[i] = size;
+        size += regions.get(i).size();
+      }
+      this.size = size;
+    }
+
+    /**
+     * Returns the total number of matching tiles.
+     */
+    public int size() {
+      return size;
+    }
+
+    public int getX(int i) {
+      int region = findRegion(i);
+      return regions.get(region).getX(i - regionStarts[region]);
+    }
+
+    public int getY(int i) {
+      int region = findRegion(i);
+      return regions.get(region).getY(i - regionStarts[region]);
+    }
+
+    private int findRegion(int i) {
+      int region = Arrays.binarySearch(regionStarts, i);
+      if (region < 0) {
+        region = -region - 2;
+      }
+      return region;
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private static class SearchTask extends RecursiveTask<List<RegionMatches>> {
+
+    private static final int REGIONS_PER_TASK = 32;
+
+    private final WorldTiles tiles;
+    private final TilePredicate predicate;
+    // region indexes, regionY * regionsWide + regionX
+    private final int start, end;
+
+    SearchTask(WorldTiles tiles, TilePredicate predicate, int start, int end) {
+      this.tiles = tiles;
+      this.predicate = predicate;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<RegionMatches> compute() {
+      if (end - start > REGIONS_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        SearchTask top = new SearchTask(tiles, predicate, mid, end);
+        top.fork();
+        List<RegionMatches> regions = new SearchTask(tiles, predicate, start, mid).compute();
+        regions.addAll(top.join());
+        return regions;
+      }
+
+      List<RegionMatches> regions = new ArrayList<>();
+      int width = tiles.getWidth();
+      int height = tiles.getHeight();
+      int[] matches = new int[32 * 32];
+      for (int region = start; region < end; region++) {
+        int regionX = region % tiles.getRegionsWide();
+        int regionY = region / tiles.getRegionsWide();
+        short[] materials = tiles.getRegionMaterials(regionX, regionY);
+        if (materials == null
+            || !predicate.mayMatchRegion(materials, tiles.getRegionMods(regionX, regionY))) {
+          continue;
+        }
+
+        int count = 0;
+        int maxX = Math.min(regionX * 32 + 32, width);
+        int maxY = Math.min(regionY * 32 + 32, height);
+        for (int y = regionY * 32; y < maxY; y++) {
+          for (int x = regionX * 32; x < maxX; x++) {
+            int index = y * width + x;
+            if (predicate.matches(tiles, index)) {
+              matches[count++] = index;
+            }
+          }
+        }
+        if (count > 0) {
+          regions.add(new RegionMatches(regionX, regionY, width, Arrays.copyOf(matches, count)));
+        }
+      }
+      return regions;
+    }
+  }
+}
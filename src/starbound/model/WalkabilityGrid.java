@@ -0,0 +1,161 @@
+package starbound.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import starbound.model.World.WorldTiles;
+
+/**
+ * The tiles where the player fits, one bit per tile. A tile is passable if the player's body,
+ * which is {@link #PLAYER_WIDTH} by {@link #PLAYER_HEIGHT} tiles with the tile at its bottom
+ * left, overlaps no solid tiles.
+ */
+public class WalkabilityGrid {
+
+  public static final int PLAYER_WIDTH = 2;
+  public static final int PLAYER_HEIGHT = 3;
+
+  public static WalkabilityGrid create(WorldTiles tiles) {
+    WalkabilityGrid grid = new WalkabilityGrid(tiles.getWidth(), tiles.getHeight());
+    ForkJoinPool.commonPool().invoke(new BuildTask(tiles, grid, 0, grid.height));
+    return grid;
+  }
+
+  /**
+   * Returns whether the tile blocks movement. Ungenerated tiles are treated as solid, and so are
+   * tiles with a foreground material but no collision information.
+   */
+  public static boolean isSolid(WorldTiles tiles, int index) {
+    int material = tiles.tiles[index];
+    switch (tiles.collisions[index]) {
+    case WorldTiles.COLLISION_BLOCK:
+    case WorldTiles.COLLISION_SLIPPERY:
+      return true;
+    case WorldTiles.COLLISION_NULL:
+      return material >= 0 || material == WorldTiles.NULL_MATERIAL;
+    default:
+      return material == WorldTiles.NULL_MATERIAL;
+    }
+  }
+
+  private final int width, height;
+  private final int wordsPerRow;
+  private final long[] passable;
+
+  private WalkabilityGrid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.wordsPerRow = (width + 63) >>> 6;
+    this.passable = new long[wordsPerRow * height];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public boolean isPassable(int x, int y) {
+    if (y < 0 || y >= height) {
+      return false;
+    }
+    x = wrapX(x);
+    return (passable[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+  }
+
+  int wrapX(int x) {
+    x %= width;
+    return x < 0 ? x + width : x;
+  }
+
+  /**
+   * Builds rows [start, end) of the grid. Each row only depends on the tiles of its own and the
+   * rows above it, so rows can be built in parallel.
+   */
+  @SuppressWarnings("serial")
+  private static class BuildTask extends RecursiveAction {
+
+    private static final int ROWS_PER_TASK = 64;
+
+    private final WorldTiles tiles;
+    private final WalkabilityGrid grid;
+    private final int start, end;
+
+    BuildTask(WorldTiles tiles, WalkabilityGrid grid, int start, int end) {
+      this.tiles = tiles;
+      this.grid = grid;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > ROWS_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        invokeAll(
+            new BuildTask(tiles, grid, start, mid),
+            new BuildTask(tiles, grid, mid, end));
+        return;
+      }
+
+      int words = grid.wordsPerRow;
+      long[] open = new long[words];
+      long[] row = new long[words];
+      for (int y = start; y < end; y++) {
+        if (y + PLAYER_HEIGHT > grid.height) {
+          // the player doesn't fit below the top of the world
+          continue;
+        }
+        // a tile is open for the player's body if all the tiles above it up to the player's
+        // height are open
+        Arrays.fill(row, -1L);
+        for (int dy = 0; dy < PLAYER_HEIGHT; dy++) {
+          openTiles(y + dy, open);
+          for (int w = 0; w < words; w++) {
+            row[w] &= open[w];
+          }
+        }
+        // then the same for the columns to the right, wrapping around the world
+        long[] column = row.clone();
+        for (int dx = 1; dx < PLAYER_WIDTH; dx++) {
+          shiftLeft(column);
+          for (int w = 0; w < words; w++) {
+            row[w] &= column[w];
+          }
+        }
+        System.arraycopy(row, 0, grid.passable, y * words, words);
+      }
+    }
+
+    private void openTiles(int y, long[] open) {
+      Arrays.fill(open, 0);
+      int index = y * grid.width;
+      for (int x = 0; x < grid.width; x++, index++) {
+        if (!isSolid(tiles, index)) {
+          open[x >>> 6] |= 1L << x;
+        }
+      }
+    }
+
+    /**
+     * Moves every bit one tile to the left, so that bit x holds what was bit x + 1, with the
+     * first tile wrapping around to the last.
+     */
+    private void shiftLeft(long[] bits) {
+      boolean first = (bits[0] & 1) != 0;
+      for (int w = 0; w < bits.length; w++) {
+        long next = w + 1 < bits.length ? bits[w + 1] : 0;
+        bits[w] = (bits[w] >>> 1) | (next << 63);
+      }
+      int last = grid.width - 1;
+      if (first) {
+        bits[last >>> 6] |= 1L << last;
+      } else {
+        bits[last >>> 6] &= ~(1L << last);
+      }
+    }
+  }
+}
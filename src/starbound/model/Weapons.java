@@ -1,6 +1,6 @@
 package starbound.model;
 
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -8,6 +8,7 @@ import java.util.Map;
 
 import starbound.io.SBAsset6;
 import starbound.io.SBAsset6.AssetNode;
+import starbound.io.SBAsset6.AssetParser;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -21,17 +22,16 @@ public class Weapons {
     List<AssetNode> weaponActiveItems =
         assets.getDirectory("items/active/weapons").findFiles(".activeitem");
     
-    Map<String, WeaponConfig> weaponConfigs = new HashMap<>();
-    JsonParser parser = new JsonParser();
-
-    for (AssetNode weaponActiveItem : weaponActiveItems) {
-
-      byte[] weaponActiveItemBytes = assets.get(weaponActiveItem);
-      JsonObject e = parser.parse(new String(weaponActiveItemBytes, Charset.forName("utf-8")))
-          .getAsJsonObject();
-
-      JsonElement primaryAbilityElement = e.get("primaryAbility");
-      if (primaryAbilityElement != null) {
+    List<WeaponConfig> parsed = assets.parseAll(weaponActiveItems, new AssetParser<WeaponConfig>() {
+      @Override
+      public WeaponConfig parse(AssetNode node, ByteBuffer weaponActiveItemBytes) {
+        JsonObject e = new JsonParser().parse(SBAsset6.toText(weaponActiveItemBytes))
+            .getAsJsonObject();
+
+        JsonElement primaryAbilityElement = e.get("primaryAbility");
+        if (primaryAbilityElement == null) {
+          return null;
+        }
 
         JsonObject primaryAbility = primaryAbilityElement.getAsJsonObject();
         String name = e.get("itemName").getAsString();
@@ -45,10 +45,10 @@ public class Weapons {
           tooltipKind = tooltipKindElement.getAsString();
         }
         String category = e.get("category").getAsString();
-          
+
         int price = e.get("price").getAsInt();
 
-        WeaponConfig weaponConfig = new WeaponConfig(
+        return new WeaponConfig(
             name,
             shortdescription,
             tooltipKind,
@@ -57,8 +57,12 @@ public class Weapons {
             getValueOrRange(primaryAbility.get("fireTime")),
             getValueOrRange(primaryAbility.get("baseDps")),
             getValueOrRange(primaryAbility.get("energyUsage")));
-        weaponConfigs.put(name, weaponConfig);
       }
+    });
+
+    Map<String, WeaponConfig> weaponConfigs = new HashMap<>();
+    for (WeaponConfig weaponConfig : parsed) {
+      weaponConfigs.put(weaponConfig.name, weaponConfig);
     }
     
     return new Weapons(weaponConfigs);
@@ -1,23 +1,43 @@
 package starbound.model;
 
 import java.awt.Point;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import starbound.io.BTreeDB5;
+import starbound.io.KeyInterner;
 import starbound.io.Sbon;
+import starbound.io.SbonPath;
 import starbound.io.StarboundFiles;
 import starbound.io.VersionedJson;
 import starbound.io.ZipUtil;
+import starbound.model.DungeonIndex.Extent;
+import starbound.model.LiquidStatistics.RegionVolume;
 
-public class World {
+public class World implements Closeable {
+
+  static final SbonPath CELESTIAL_COORDINATE =
+      SbonPath.compile("worldTemplate/celestialParameters/coordinate");
+  private static final SbonPath CELESTIAL_NAME =
+      SbonPath.compile("worldTemplate/celestialParameters/name");
+  private static final SbonPath CELESTIAL_TYPE_NAME =
+      SbonPath.compile("worldTemplate/celestialParameters/visitableParameters/typeName");
+  // Compressed bytes read to decompress the entity count at the start of a region, which is
+  // almost always enough
+  private static final int ENTITY_COUNT_PREFIX = 512;
+  private static final int MAX_VARINT_LENGTH = 10;
   
   public static class Region {
     public final int x, y;
@@ -87,23 +107,51 @@ public class World {
   }
   
   public static World load(File file) throws IOException {
-    
     BTreeDB5 db = BTreeDB5.load(file);
-    
+    return readMetadata(file, db, db);
+  }
+
+  /**
+   * Opens the world file without reading it into memory. Tiles and entities are read from disk a
+   * block at a time as they are requested. The returned world must be closed.
+   */
+  public static World open(File file) throws IOException {
+    BTreeDB5 db = BTreeDB5.open(file);
+    try {
+      return readMetadata(file, db, db);
+    } catch (RuntimeException | Error e) {
+      db.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads only the header of the world file and the blocks leading to the world's metadata,
+   * which is enough for the name, type, id and size of the world. The tiles and entities are
+   * read from the file the first time they are requested.
+   */
+  public static World peekMetadata(File file) throws IOException {
+    try (BTreeDB5 db = BTreeDB5.open(file)) {
+      return readMetadata(file, db, null);
+    }
+  }
+
+  private static World readMetadata(File file, BTreeDB5 metadataDb, BTreeDB5 db) {
+
     // 1 byte for layer, 2 bytes for x, 2 bytes for y
-    if (db.keySize != 5) {
+    if (metadataDb.keySize != 5) {
       throw new AssertionError("World db key size is not 5 bytes");
-    }    
-    
+    }
+
     // read metadata
-    ByteBuffer bytes = get(db, 0, 0, 0);
+    ByteBuffer bytes = get(metadataDb, 0, 0, 0);
     if (bytes == null) {
       throw new AssertionError("World has no metadata");
     }
     int width = bytes.getInt();
     int height = bytes.getInt();
     VersionedJson metadata = VersionedJson.readVersionedJson(bytes);
-    
+
     return new World(file, db, width, height, metadata.data);
   }
   
@@ -116,7 +164,7 @@ public class World {
     return worlds;
   }
   
-  private final BTreeDB5 db;
+  private BTreeDB5 db;
   
   public final File file;
   public final int width, height;
@@ -133,11 +181,11 @@ public class World {
     this.metadata = metadata;
   }
 
-  private static final byte[] tempKey = new byte[5];
   private static ByteBuffer get(BTreeDB5 db, int layer, int x, int y) {
     if ((x & 0xFFFF0000) != 0 || (y & 0xFFFF0000) != 0) {
       throw new AssertionError("coords greater than key size: " + x + ", " + y);
     }
+    byte[] tempKey = new byte[5];
     tempKey[0] = (byte) layer;
     tempKey[1] = (byte) ((x >> 8) & 0xFF);
     tempKey[2] = (byte) (x & 0xFF);
@@ -147,15 +195,53 @@ public class World {
   }
   
   private static ByteBuffer get(BTreeDB5 db, byte[] key) {
-    ByteBuffer bytes = db.get(key);
-    if (bytes == null) {
+    return decompress(db.get(key));
+  }
+
+  static ByteBuffer decompress(ByteBuffer compressed) {
+    if (compressed == null) {
       return null;
     }
-    return ByteBuffer.wrap(ZipUtil.decompress(bytes.array()));
+    return ByteBuffer.wrap(ZipUtil.decompress(compressed.array()));
+  }
+
+  /**
+   * Returns the still compressed value of a key, or null if the world has no such key.
+   */
+  ByteBuffer getCompressed(byte[] key) {
+    return getDb().get(key);
+  }
+
+  /**
+   * Returns the keys of the tile regions that were generated.
+   */
+  List<byte[]> getRegionKeys() {
+    List<byte[]> regionKeys = new ArrayList<>();
+    for (byte[] key : getDb().getKeys()) {
+      if (key[0] == 0x01) {
+        regionKeys.add(key);
+      }
+    }
+    return regionKeys;
   }
   
   private ByteBuffer get(int layer, int x, int y) {
-    return get(db, layer, x, y);
+    return get(getDb(), layer, x, y);
+  }
+
+  /**
+   * Returns the world's db, reading the whole file the first time if this world was only
+   * opened with {@link #peekMetadata(File)}.
+   */
+  private synchronized BTreeDB5 getDb() {
+    if (db == null) {
+      try {
+        db = BTreeDB5.load(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not load world " + file, e);
+      }
+    }
+    return db;
   }
   
   public Tile[] getTiles(int regionX, int regionY) {
@@ -196,22 +282,304 @@ public class World {
   }
 
   public static class WorldTiles {
-    private final short[] tiles;
+
+    /** Foreground material of tiles that have not been generated or are outside the world. */
+    public static final int NULL_MATERIAL = -2;
+    /** Dungeon id of tiles that are not part of a dungeon. */
+    public static final int NO_DUNGEON = 0xFFFF;
+    /** Foreground mod of tiles without a mod. */
+    public static final int NO_MOD = -1;
+
+    // Collision kinds
+    public static final int COLLISION_NULL = 0;
+    public static final int COLLISION_NONE = 1;
+    public static final int COLLISION_PLATFORM = 2;
+    public static final int COLLISION_DYNAMIC = 3;
+    public static final int COLLISION_SLIPPERY = 4;
+    public static final int COLLISION_BLOCK = 5;
+
+    /** Surface height of columns without any solid tile. */
+    public static final int NO_SURFACE = -1;
+
+    final short[] tiles;
+    final short[] mods;
+    final byte[] biomes;
+    final byte[] liquids;
+    final float[] liquidLevels;
+    final byte[] collisions;
+    final short[] dungeons;
     private final int width, height;
+    private final int regionsWide;
+    // Sorted distinct foreground materials and mods of each region, null for missing regions
+    private final short[][] regionMaterials;
+    private final short[][] regionMods;
+    // Per column, the y of the highest tile with a foreground material
+    private final int[] surface;
+    // The dungeons in each region, null for regions without any
+    private final Extent[][] regionDungeons;
+    private DungeonIndex dungeonIndex;
+    // The liquids in each region, null for regions without any
+    private final RegionVolume[][] regionLiquids;
+    private LiquidStatistics liquidStatistics;
 
-    private WorldTiles(int width, int height, short[] tiles) {
-      this.tiles = tiles;
+    private WorldTiles(int width, int height) {
       this.width = width;
       this.height = height;
+      int size = width * height;
+      this.tiles = new short[size];
+      this.mods = new short[size];
+      this.biomes = new byte[size];
+      this.liquids = new byte[size];
+      this.liquidLevels = new float[size];
+      this.collisions = new byte[size];
+      this.dungeons = new short[size];
+      Arrays.fill(tiles, (short) NULL_MATERIAL);
+      Arrays.fill(mods, (short) NO_MOD);
+      Arrays.fill(dungeons, (short) NO_DUNGEON);
+
+      this.regionsWide = (width + 31) / 32;
+      int regionsHigh = (height + 31) / 32;
+      this.regionMaterials = new short[regionsWide * regionsHigh][];
+      this.regionMods = new short[regionsWide * regionsHigh][];
+      this.regionDungeons = new Extent[regionsWide * regionsHigh][];
+      this.regionLiquids = new RegionVolume[regionsWide * regionsHigh][];
+      this.surface = new int[width];
+      Arrays.fill(surface, NO_SURFACE);
     }
-    
-    private void setTile(int x, int y, short v) {
-      tiles[y * width + x] = v;
+
+    private WorldTiles(WorldTiles other) {
+      this.width = other.width;
+      this.height = other.height;
+      this.tiles = other.tiles.clone();
+      this.mods = other.mods.clone();
+      this.biomes = other.biomes.clone();
+      this.liquids = other.liquids.clone();
+      this.liquidLevels = other.liquidLevels.clone();
+      this.collisions = other.collisions.clone();
+      this.dungeons = other.dungeons.clone();
+      this.regionsWide = other.regionsWide;
+      // the arrays of each region are replaced rather than changed, so they can be shared
+      this.regionMaterials = other.regionMaterials.clone();
+      this.regionMods = other.regionMods.clone();
+      this.regionDungeons = other.regionDungeons.clone();
+      this.regionLiquids = other.regionLiquids.clone();
+      this.surface = other.surface.clone();
+    }
+
+    /**
+     * Returns a copy that can be updated without changing these tiles.
+     */
+    synchronized WorldTiles copy() {
+      return new WorldTiles(this);
+    }
+
+    /**
+     * Decodes the layers of one region. Regions don't overlap, so this can be called for
+     * different regions from different threads.
+     */
+    private void readRegion(int regionX, int regionY, ByteBuffer bytes) {
+      if (regionX >= regionsWide || regionY * 32 >= height) {
+        return;
+      }
+      short[] distinctMaterials = new short[32 * 32];
+      short[] distinctMods = new short[32 * 32];
+      int materialCount = 0;
+      int modCount = 0;
+      ExtentBuilder extents = new ExtentBuilder();
+      VolumeBuilder volumes = new VolumeBuilder();
+
+      // unknown 3 bytes
+      int offset = 3;
+      for (int y = 0; y < 32; y++) {
+        int tileY = regionY * 32 + y;
+        for (int x = 0; x < 32; x++, offset += TILE_SIZE) {
+          int tileX = regionX * 32 + x;
+          short material = bytes.getShort(offset + TILE_FOREGROUND_MATERIAL);
+          if (material == NULL_MATERIAL || tileX >= width || tileY >= height) {
+            continue;
+          }
+          int i = tileY * width + tileX;
+          short mod = bytes.getShort(offset + TILE_FOREGROUND_MOD);
+          tiles[i] = material;
+          mods[i] = mod;
+          distinctMaterials[materialCount++] = material;
+          distinctMods[modCount++] = mod;
+          biomes[i] = bytes.get(offset + TILE_BIOME);
+          byte liquid = bytes.get(offset + TILE_LIQUID);
+          liquids[i] = liquid;
+          if (liquid != 0) {
+            float level = bytes.getFloat(offset + TILE_LIQUID_LEVEL);
+            liquidLevels[i] = level;
+            volumes.add(liquid & 0xFF, level);
+          } else {
+            liquidLevels[i] = 0;
+          }
+          collisions[i] = bytes.get(offset + TILE_COLLISION);
+          short dungeon = bytes.getShort(offset + TILE_DUNGEON_ID);
+          dungeons[i] = dungeon;
+          if ((dungeon & 0xFFFF) != NO_DUNGEON) {
+            extents.add(dungeon & 0xFFFF, tileX, tileY);
+          }
+        }
+      }
+
+      int region = regionY * regionsWide + regionX;
+      regionMaterials[region] = distinct(distinctMaterials, materialCount);
+      regionMods[region] = distinct(distinctMods, modCount);
+      regionDungeons[region] = extents.toArray();
+      regionLiquids[region] = volumes.toArray();
+    }
+
+    /**
+     * Decodes a region again after it changed, and updates the surface of its columns.
+     */
+    synchronized void updateRegion(int regionX, int regionY, ByteBuffer bytes) {
+      readRegion(regionX, regionY, bytes);
+      dungeonIndex = null;
+      liquidStatistics = null;
+      int minY = regionY * 32;
+      int maxY = Math.min(minY + 32, height) - 1;
+      int maxX = Math.min(regionX * 32 + 32, width);
+      for (int x = regionX * 32; x < maxX; x++) {
+        if (surface[x] > maxY) {
+          // the surface is above the region, so nothing in the region can change it
+          continue;
+        }
+        // the surface is now in or above the region, or lower down if the region was dug out
+        surface[x] = findSurface(x, maxY);
+      }
+    }
+
+    /**
+     * Finds the surface of the columns [start, end). Columns are independent, so this can be
+     * called for different columns from different threads.
+     */
+    private void computeSurface(int start, int end) {
+      for (int x = start; x < end; x++) {
+        surface[x] = findSurface(x, height - 1);
+      }
+    }
+
+    private int findSurface(int x, int fromY) {
+      for (int i = fromY * width + x; i >= 0; i -= width) {
+        if (tiles[i] >= 0) {
+          return i / width;
+        }
+      }
+      return NO_SURFACE;
+    }
+
+    /**
+     * Returns the dungeons of the world. The index is built from the dungeon extents found while
+     * decoding the regions.
+     */
+    public synchronized DungeonIndex getDungeonIndex() {
+      if (dungeonIndex == null) {
+        dungeonIndex = DungeonIndex.create(this);
+      }
+      return dungeonIndex;
+    }
+
+    /**
+     * Returns the volume of each liquid in the world, summed from the volumes found while decoding
+     * the regions.
+     */
+    public synchronized LiquidStatistics getLiquidStatistics() {
+      if (liquidStatistics == null) {
+        liquidStatistics = LiquidStatistics.create(this);
+      }
+      return liquidStatistics;
+    }
+
+    /**
+     * Returns the volume of each liquid in the region, or null if there is no liquid.
+     */
+    RegionVolume[] getRegionLiquids(int regionX, int regionY) {
+      return regionLiquids[regionY * regionsWide + regionX];
+    }
+
+    /**
+     * Returns the bounding boxes of the dungeons in the region, or null if there are none.
+     */
+    Extent[] getRegionDungeons(int regionX, int regionY) {
+      return regionDungeons[regionY * regionsWide + regionX];
+    }
+
+    private static short[] distinct(short[] values, int length) {
+      Arrays.sort(values, 0, length);
+      int n = 0;
+      for (int i = 0; i < length; i++) {
+        if (n == 0 || values[n - 1] != values[i]) {
+          values[n++] = values[i];
+        }
+      }
+      return Arrays.copyOf(values, n);
+    }
+
+    /**
+     * Returns the sorted distinct foreground materials of the region, or null if the region
+     * was not generated.
+     */
+    public short[] getRegionMaterials(int regionX, int regionY) {
+      return regionMaterials[regionY * regionsWide + regionX];
+    }
+
+    /**
+     * Returns the sorted distinct foreground mods of the region, or null if the region was not
+     * generated.
+     */
+    public short[] getRegionMods(int regionX, int regionY) {
+      return regionMods[regionY * regionsWide + regionX];
     }
     
     public int getTile(int x, int y) {
       return tiles[y * width + x];
     }
+
+    public int getMod(int x, int y) {
+      return mods[y * width + x];
+    }
+
+    public int getBiome(int x, int y) {
+      return biomes[y * width + x] & 0xFF;
+    }
+
+    public int getLiquid(int x, int y) {
+      return liquids[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Returns how full of liquid the tile is, usually between 0 and 1 but higher under pressure.
+     */
+    public float getLiquidLevel(int x, int y) {
+      return liquidLevels[y * width + x];
+    }
+
+    /**
+     * Returns the tile's collision kind, one of the {@code COLLISION_} constants.
+     */
+    public int getCollision(int x, int y) {
+      return collisions[y * width + x];
+    }
+
+    public int getDungeonId(int x, int y) {
+      return dungeons[y * width + x] & 0xFFFF;
+    }
+
+    /**
+     * Returns the y of the highest tile of the column that has a foreground material, or
+     * {@link #NO_SURFACE}.
+     */
+    public int getSurface(int x) {
+      return surface[x];
+    }
+
+    /**
+     * Returns how many tiles the tile is below the surface of its column, negative above it.
+     */
+    public int getDepthBelowSurface(int x, int y) {
+      return surface[x] - y;
+    }
     
     public int getWidth() {
       return width;
@@ -220,49 +588,237 @@ public class World {
     public int getHeight() {
       return height;
     }
+
+    public int getRegionsWide() {
+      return regionsWide;
+    }
+
+    public int getRegionsHigh() {
+      return regionMaterials.length / regionsWide;
+    }
   }
-  
-  public WorldTiles getTileForgroundMaterial() {
+
+  /**
+   * Collects the bounding box and tile count of each dungeon in a region. A region rarely has
+   * more than a couple of dungeons, so they are kept in small parallel arrays.
+   */
+  private static class ExtentBuilder {
+
+    private int[] ids = new int[2];
+    // minX, minY, maxX, maxY, tile count for each id
+    private int[] boxes = new int[2 * 5];
+    private int size;
+    private int last = -1;
+
+    void add(int id, int x, int y) {
+      if (last < 0 || ids[last] != id) {
+        last = indexOf(id);
+      }
+      int box = last * 5;
+      boxes[box] = Math.min(boxes[box], x);
+      boxes[box + 1] = Math.min(boxes[box + 1], y);
+      boxes[box + 2] = Math.max(boxes[box + 2], x);
+      boxes[box + 3] = Math.max(boxes[box + 3], y);
+      boxes[box + 4]++;
+    }
+
+    private int indexOf(int id) {
+      for (int i = 0; i < size; i++) {
+        if (ids[i] == id) {
+          return i;
+        }
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        boxes = Arrays.copyOf(boxes, size * 2 * 5);
+      }
+      ids[size] = id;
+      int box = size * 5;
+      boxes[box] = Integer.MAX_VALUE;
+      boxes[box + 1] = Integer.MAX_VALUE;
+      boxes[box + 2] = Integer.MIN_VALUE;
+      boxes[box + 3] = Integer.MIN_VALUE;
+      boxes[box + 4] = 0;
+      return size++;
+    }
+
+    Extent[] toArray() {
+      if (size == 0) {
+        return null;
+      }
+      Extent[] extents = new Extent[size];
+      for (int i = 0; i < size; i++) {
+        int box = i * 5;
+        extents[i] = new Extent(
+            ids[i], boxes[box], boxes[box + 1], boxes[box + 2], boxes[box + 3], boxes[box + 4]);
+      }
+      return extents;
+    }
+  }
+
+  /**
+   * Sums the tiles and volume of each liquid in a region. Like dungeons, a region rarely has
+   * more than one or two liquids.
+   */
+  private static class VolumeBuilder {
+
+    private int[] ids = new int[2];
+    private int[] tileCounts = new int[2];
+    private double[] volumes = new double[2];
+    private int size;
+    private int last = -1;
+
+    void add(int id, float level) {
+      if (last < 0 || ids[last] != id) {
+        last = indexOf(id);
+      }
+      tileCounts[last]++;
+      volumes[last] += level;
+    }
+
+    private int indexOf(int id) {
+      for (int i = 0; i < size; i++) {
+        if (ids[i] == id) {
+          return i;
+        }
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        tileCounts = Arrays.copyOf(tileCounts, size * 2);
+        volumes = Arrays.copyOf(volumes, size * 2);
+      }
+      ids[size] = id;
+      tileCounts[size] = 0;
+      volumes[size] = 0;
+      return size++;
+    }
+
+    RegionVolume[] toArray() {
+      if (size == 0) {
+        return null;
+      }
+      RegionVolume[] regionVolumes = new RegionVolume[size];
+      for (int i = 0; i < size; i++) {
+        regionVolumes[i] = new RegionVolume(ids[i], tileCounts[i], volumes[i]);
+      }
+      return regionVolumes;
+    }
+  }
+
+  /**
+   * Returns the decoded tile layers of the whole world. The regions are decoded in parallel the
+   * first time this is called.
+   */
+  public synchronized WorldTiles getTileForgroundMaterial() {
     if (cachedTiles != null) {
       return cachedTiles;
     }
     
-    short[] tilesArray = new short[width * height];
-    WorldTiles tiles = new WorldTiles(width, height, tilesArray);
-    Arrays.fill(tilesArray, (short)-2);
-    
-    List<byte[]> keys = db.getKeys();
-    for (byte[] key : keys) {
-      if (key[0] == 0x01) {
+    WorldTiles tiles = new WorldTiles(width, height);
+
+    List<byte[]> regionKeys = getRegionKeys();
+    ForkJoinPool.commonPool().invoke(
+        new ReadRegionsTask(getDb(), tiles, regionKeys, 0, regionKeys.size()));
+    ForkJoinPool.commonPool().invoke(new SurfaceTask(tiles, 0, width));
+
+    cachedTiles = tiles;
+
+    return tiles;
+  }
+
+  /**
+   * Takes over the decoded tiles of an older save of this world, decoding only the regions that
+   * changed since. The older world's tiles are copied rather than changed, as they may still be
+   * read while this world is prepared. Does nothing if the older world's tiles were not decoded.
+   */
+  public synchronized void reuseTiles(World older, WorldDiff diff) {
+    WorldTiles olderTiles;
+    synchronized (older) {
+      olderTiles = older.cachedTiles;
+    }
+    if (olderTiles == null || cachedTiles != null) {
+      return;
+    }
+    WorldTiles tiles = olderTiles.copy();
+    for (WorldDiff.RegionChanges region : diff.regions) {
+      // decompressed already when the worlds were compared
+      ByteBuffer bytes = region.newBytes;
+      region.newBytes = null;
+      if (bytes == null) {
+        bytes = get(1, region.regionX, region.regionY);
+      }
+      if (bytes != null) {
+        tiles.updateRegion(region.regionX, region.regionY, bytes);
+      }
+    }
+    cachedTiles = tiles;
+  }
+
+  @SuppressWarnings("serial")
+  private static class ReadRegionsTask extends RecursiveAction {
+
+    private static final int REGIONS_PER_TASK = 16;
+
+    private final BTreeDB5 db;
+    private final WorldTiles tiles;
+    private final List<byte[]> regionKeys;
+    private final int start, end;
+
+    ReadRegionsTask(BTreeDB5 db, WorldTiles tiles, List<byte[]> regionKeys, int start, int end) {
+      this.db = db;
+      this.tiles = tiles;
+      this.regionKeys = regionKeys;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > REGIONS_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        invokeAll(
+            new ReadRegionsTask(db, tiles, regionKeys, start, mid),
+            new ReadRegionsTask(db, tiles, regionKeys, mid, end));
+        return;
+      }
+      for (int i = start; i < end; i++) {
+        byte[] key = regionKeys.get(i);
         int regionX = ((key[1] & 0xFF) << 8) | (key[2] & 0xFF);
         int regionY = ((key[3] & 0xFF) << 8) | (key[4] & 0xFF);
-        ByteBuffer bytes = get(1, regionX, regionY);
-        // unknown 3 bytes
-        bytes.get();
-        bytes.get();
-        bytes.get();
-
-        for (int y = 0; y < 32; y++) {
-          for (int x = 0; x < 32; x++) {
-            short material = bytes.getShort();
-            bytes.position(bytes.position() + 28);
-            if (material != -2) {
-              tiles.setTile(regionX * 32 + x, regionY * 32 + y, material);
-            }
-          }
-        }
+        tiles.readRegion(regionX, regionY, World.get(db, key));
       }
     }
+  }
+  
+  @SuppressWarnings("serial")
+  private static class SurfaceTask extends RecursiveAction {
 
-    cachedTiles = tiles;
+    private static final int COLUMNS_PER_TASK = 64;
 
-    return tiles;
+    private final WorldTiles tiles;
+    private final int start, end;
+
+    SurfaceTask(WorldTiles tiles, int start, int end) {
+      this.tiles = tiles;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > COLUMNS_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        invokeAll(new SurfaceTask(tiles, start, mid), new SurfaceTask(tiles, mid, end));
+        return;
+      }
+      tiles.computeSurface(start, end);
+    }
   }
-  
+
   public List<Region> getRegions(boolean fullTiles) {
     List<Region> regions = new ArrayList<>();
 
-    List<byte[]> keys = db.getKeys();
+    List<byte[]> keys = getDb().getKeys();
     for (byte[] key : keys) {
       if (key[0] == 0x01) {
         int x = (key[1] << 8) | key[2];
@@ -286,7 +842,7 @@ public class World {
     if (bytes == null) {
       return null;
     }
-    return readEntities(null, bytes);
+    return readEntities(null, bytes, new KeyInterner());
   }
 
   public List<VersionedJson> getEntities() {
@@ -296,9 +852,12 @@ public class World {
     
     List<VersionedJson> entities = new ArrayList<>();
     
+    // Entities repeat the same keys, so share them across all of them
+    KeyInterner keys = new KeyInterner();
+    BTreeDB5 db = getDb();
     for (byte[] key : db.getKeys()) {
       if (key[0] == 0x02) {
-        readEntities(entities, get(db, key));
+        readEntities(entities, get(db, key), keys);
       }
     }
     
@@ -307,20 +866,95 @@ public class World {
     return entities;
   }
   
-  private static List<VersionedJson> readEntities(List<VersionedJson> entities, ByteBuffer bytes) {
+  /**
+   * Returns the undecoded entities of each region that has any, decompressed one region at a time
+   * as they are iterated. Each buffer holds the number of entities followed by that many
+   * versioned jsons.
+   */
+  public Iterable<ByteBuffer> getEntityBytes() {
+    BTreeDB5 db = getDb();
+    List<byte[]> keys = new ArrayList<>();
+    for (byte[] key : db.getKeys()) {
+      if (key[0] == 0x02) {
+        keys.add(key);
+      }
+    }
+    return new Iterable<ByteBuffer>() {
+      @Override
+      public Iterator<ByteBuffer> iterator() {
+        Iterator<byte[]> regions = keys.iterator();
+        return new Iterator<ByteBuffer>() {
+          @Override
+          public boolean hasNext() {
+            return regions.hasNext();
+          }
+
+          @Override
+          public ByteBuffer next() {
+            return get(db, regions.next());
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns the number of entities in the world without decoding them.
+   */
+  public int countEntities() {
+    if (cachedEntities != null) {
+      return cachedEntities.size();
+    }
+
+    int count = 0;
+    BTreeDB5 db = getDb();
+    for (byte[] key : db.getKeys()) {
+      if (key[0] == 0x02) {
+        count += readEntityCount(db, key);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the number of entities at the start of a region, decompressing only that number from
+   * the start of the region's value.
+   */
+  private static int readEntityCount(BTreeDB5 db, byte[] key) {
+    byte[] start = ZipUtil.decompressStart(
+        db.get(key, ENTITY_COUNT_PREFIX).array(), MAX_VARINT_LENGTH);
+    if (start == null) {
+      start = ZipUtil.decompressStart(db.get(key).array(), MAX_VARINT_LENGTH);
+    }
+    return (int)Sbon.readVarint(ByteBuffer.wrap(start));
+  }
+
+  /**
+   * Closes the file of a world that was opened with {@link #open(File)}, after which its tiles
+   * and entities can no longer be read. Does nothing for other worlds.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (db != null) {
+      db.close();
+    }
+  }
+
+  private static List<VersionedJson> readEntities(
+      List<VersionedJson> entities, ByteBuffer bytes, KeyInterner keys) {
     int length = (int)Sbon.readVarint(bytes);
     if (entities == null) {
       entities = new ArrayList<>(length);
     }
     for (int i = 0; i < length; i++) {
-      entities.add(VersionedJson.readVersionedJson(bytes));
+      entities.add(VersionedJson.readVersionedJson(bytes, keys));
     }
     return entities;
   }
 
   public Point getPlayerStart() {
-    Sbon playerStart = metadata.getByKey("playerStart");
-    return new Point(playerStart.getByIndex(0).asInt(), playerStart.getByIndex(1).asInt());
+    double[] playerStart = metadata.getByKey("playerStart").asDoubleArray();
+    return new Point((int) playerStart[0], (int) playerStart[1]);
   }
 
   public String getName() {
@@ -328,20 +962,18 @@ public class World {
       return "Player Ship";
     }
 
-    String name = metadata.getByPath(
-        "worldTemplate/celestialParameters/name", "Unknown").asString();
+    String name = metadata.getByPath(CELESTIAL_NAME, "Unknown").asString();
     name = name.replaceAll("\\^[^;]*;", "");
     return name;
   }
 
   public String getType() {
-    String type = metadata.getByPath(
-        "worldTemplate/celestialParameters/visitableParameters/typeName", "Unknown").asString();
+    String type = metadata.getByPath(CELESTIAL_TYPE_NAME, "Unknown").asString();
     return type.substring(0, 1).toUpperCase() + type.substring(1);
   }
   
   public WorldId getId() {
-    Sbon coordinate = metadata.getByPath("worldTemplate/celestialParameters/coordinate");
+    Sbon coordinate = metadata.getByPath(CELESTIAL_COORDINATE);
     List<Sbon> location = coordinate.getByKey("location").asSbonList();
     long planet = coordinate.getByKey("planet").asLong();
     long satellite = coordinate.getByKey("satellite").asLong();
@@ -353,6 +985,16 @@ public class World {
         satellite);
   }
   
+  // Offsets of the fields within the 30 bytes of a serialized tile, see readTile
+  static final int TILE_SIZE = 30;
+  static final int TILE_FOREGROUND_MATERIAL = 0;
+  static final int TILE_FOREGROUND_MOD = 4;
+  static final int TILE_LIQUID = 14;
+  static final int TILE_LIQUID_LEVEL = 15;
+  static final int TILE_COLLISION = 24;
+  static final int TILE_DUNGEON_ID = 25;
+  static final int TILE_BIOME = 27;
+
   //private static final byte[] tileBuffer = new byte[30];
   private static Tile readTile(ByteBuffer bytes) {
 
@@ -0,0 +1,230 @@
+package starbound.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import starbound.model.World.WorldTiles;
+
+/**
+ * The tiles that differ between two saves of the same world, with their foreground material and
+ * liquid before and after.
+ */
+public class WorldDiff {
+
+  /**
+   * Compares the worlds region by region, in parallel. Regions whose stored bytes are identical
+   * are skipped without being decompressed, which is most of them between two saves.
+   */
+  public static WorldDiff compare(World older, World newer) {
+    if (older.width != newer.width || older.height != newer.height) {
+      throw new IllegalArgumentException("Worlds have different sizes: "
+          + older.width + " x " + older.height + ", " + newer.width + " x " + newer.height);
+    }
+    List<byte[]> regionKeys = newer.getRegionKeys();
+    List<RegionChanges> regions = ForkJoinPool.commonPool().invoke(
+        new CompareTask(older, newer, regionKeys, 0, regionKeys.size()));
+    return new WorldDiff(newer.width, regions);
+  }
+
+  /**
+   * The changed tiles of one region. A region can have no changed tiles when only layers other
+   * than the foreground material and liquid changed.
+   */
+  public static class RegionChanges {
+
+    public final int regionX, regionY;
+    // tile indexes, y * width + x
+    private final int[] tiles;
+    private final short[] oldMaterials, newMaterials;
+    private final byte[] oldLiquids, newLiquids;
+    // The decompressed region of the newer world, kept for World.reuseTiles, which drops it
+    ByteBuffer newBytes;
+
+    private RegionChanges(int regionX, int regionY, int[] tiles, short[] oldMaterials,
+        short[] newMaterials, byte[] oldLiquids, byte[] newLiquids, ByteBuffer newBytes) {
+      this.regionX = regionX;
+      this.regionY = regionY;
+      this.tiles = tiles;
+      this.oldMaterials = oldMaterials;
+      this.newMaterials = newMaterials;
+      this.oldLiquids = oldLiquids;
+      this.newLiquids = newLiquids;
+      this.newBytes = newBytes;
+    }
+  }
+
+  /** The regions whose stored bytes differ, whether or not any tile changed. */
+  public final List<RegionChanges> regions;
+  private final int width;
+  private final int[] regionStarts;
+  private final int size;
+
+  private WorldDiff(int width, List<RegionChanges> regions) {
+    this.width = width;
+    this.regions = Collections.unmodifiableList(regions);
+    this.regionStarts = new int[regions.size()];
+    int size = 0;
+    for (int i = 0; i < regions.size(); i++) {
+      regionStarts[i] = size;
+      size += regions.get(i).tiles.length;
+    }
+    this.size = size;
+  }
+
+  /**
+   * Returns the number of changed tiles.
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getX(int i) {
+    return getTile(i) % width;
+  }
+
+  public int getY(int i) {
+    return getTile(i) / width;
+  }
+
+  /**
+   * Returns the foreground material the tile had in the older world, which is
+   * {@link WorldTiles#NULL_MATERIAL} if its region was not generated then.
+   */
+  public int getOldMaterial(int i) {
+    int region = findRegionIndex(i);
+    return regions.get(region).oldMaterials[i - regionStarts[region]];
+  }
+
+  public int getNewMaterial(int i) {
+    int region = findRegionIndex(i);
+    return regions.get(region).newMaterials[i - regionStarts[region]];
+  }
+
+  public int getOldLiquid(int i) {
+    int region = findRegionIndex(i);
+    return regions.get(region).oldLiquids[i - regionStarts[region]] & 0xFF;
+  }
+
+  public int getNewLiquid(int i) {
+    int region = findRegionIndex(i);
+    return regions.get(region).newLiquids[i - regionStarts[region]] & 0xFF;
+  }
+
+  private int getTile(int i) {
+    int region = findRegionIndex(i);
+    return regions.get(region).tiles[i - regionStarts[region]];
+  }
+
+  private int findRegionIndex(int i) {
+    int region = Arrays.binarySearch(regionStarts, i);
+    if (region < 0) {
+      region = -region - 2;
+    }
+    // regions without changed tiles start at the same index as the next region
+    while (region + 1 < regionStarts.length && regionStarts[region + 1] == i) {
+      region++;
+    }
+    return region;
+  }
+
+  @SuppressWarnings("serial")
+  private static class CompareTask extends RecursiveTask<List<RegionChanges>> {
+
+    private static final int REGIONS_PER_TASK = 16;
+
+    private final World older, newer;
+    private final List<byte[]> regionKeys;
+    private final int start, end;
+
+    CompareTask(World older, World newer, List<byte[]> regionKeys, int start, int end) {
+      this.older = older;
+      this.newer = newer;
+      this.regionKeys = regionKeys;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected List<RegionChanges> compute() {
+      if (end - start > REGIONS_PER_TASK) {
+        int mid = (start + end) >>> 1;
+        CompareTask top = new CompareTask(older, newer, regionKeys, mid, end);
+        top.fork();
+        List<RegionChanges> regions =
+            new CompareTask(older, newer, regionKeys, start, mid).compute();
+        regions.addAll(top.join());
+        return regions;
+      }
+
+      List<RegionChanges> regions = new ArrayList<>();
+      for (int i = start; i < end; i++) {
+        byte[] key = regionKeys.get(i);
+        ByteBuffer oldBytes = older.getCompressed(key);
+        ByteBuffer newBytes = newer.getCompressed(key);
+        if (newBytes.equals(oldBytes)) {
+          continue;
+        }
+        regions.add(compareRegion(key, World.decompress(oldBytes), World.decompress(newBytes)));
+      }
+      return regions;
+    }
+
+    private RegionChanges compareRegion(byte[] key, ByteBuffer oldBytes, ByteBuffer newBytes) {
+      int regionX = ((key[1] & 0xFF) << 8) | (key[2] & 0xFF);
+      int regionY = ((key[3] & 0xFF) << 8) | (key[4] & 0xFF);
+      int width = newer.width;
+      int height = newer.height;
+
+      int[] tiles = new int[32 * 32];
+      short[] oldMaterials = new short[32 * 32];
+      short[] newMaterials = new short[32 * 32];
+      byte[] oldLiquids = new byte[32 * 32];
+      byte[] newLiquids = new byte[32 * 32];
+      int count = 0;
+
+      // unknown 3 bytes
+      int offset = 3;
+      for (int y = 0; y < 32; y++) {
+        int tileY = regionY * 32 + y;
+        for (int x = 0; x < 32; x++, offset += World.TILE_SIZE) {
+          int tileX = regionX * 32 + x;
+          if (tileX >= width || tileY >= height) {
+            continue;
+          }
+          short newMaterial = newBytes.getShort(offset + World.TILE_FOREGROUND_MATERIAL);
+          byte newLiquid = newBytes.get(offset + World.TILE_LIQUID);
+          short oldMaterial = (short) WorldTiles.NULL_MATERIAL;
+          byte oldLiquid = 0;
+          if (oldBytes != null) {
+            oldMaterial = oldBytes.getShort(offset + World.TILE_FOREGROUND_MATERIAL);
+            oldLiquid = oldBytes.get(offset + World.TILE_LIQUID);
+          }
+          if (oldMaterial != newMaterial || oldLiquid != newLiquid) {
+            tiles[count] = tileY * width + tileX;
+            oldMaterials[count] = oldMaterial;
+            newMaterials[count] = newMaterial;
+            oldLiquids[count] = oldLiquid;
+            newLiquids[count] = newLiquid;
+            count++;
+          }
+        }
+      }
+      return new RegionChanges(regionX, regionY,
+          Arrays.copyOf(tiles, count),
+          Arrays.copyOf(oldMaterials, count),
+          Arrays.copyOf(newMaterials, count),
+          Arrays.copyOf(oldLiquids, count),
+          Arrays.copyOf(newLiquids, count),
+          newBytes);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package starbound.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import starbound.model.World.WorldTiles;
+
+/**
+ * Tile counts per foreground material, biome, liquid and dungeon of a world. Tiles that were
+ * never generated are only counted in the material histogram, as {@link WorldTiles#NULL_MATERIAL}.
+ */
+public class WorldStatistics {
+
+  /**
+   * Counts every tile of the world. The world is split into bands of regions that are counted in
+   * parallel and then merged.
+   */
+  public static WorldStatistics compute(WorldTiles tiles) {
+    int regionRows = (tiles.getHeight() + 31) / 32;
+    int parallelism = ForkJoinPool.commonPool().getParallelism();
+    // A few bands per thread balances the load without allocating too many counting arrays
+    int rowsPerTask = Math.max(1, regionRows / (parallelism * 4));
+    Counts counts = ForkJoinPool.commonPool().invoke(
+        new CountTask(tiles, 0, regionRows, rowsPerTask));
+
+    return new WorldStatistics(
+        new Histogram(counts.materials, true),
+        new Histogram(counts.biomes, false),
+        new Histogram(counts.liquids, false),
+        new Histogram(counts.dungeons, false));
+  }
+
+  /**
+   * Counts of values that fit in 8 or 16 bits, indexed by their unsigned value.
+   */
+  public static class Histogram {
+
+    private final int[] counts;
+    // Whether ids are stored as signed shorts, like foreground materials
+    private final boolean signed;
+
+    private Histogram(int[] counts, boolean signed) {
+      this.counts = counts;
+      this.signed = signed;
+    }
+
+    public int get(int id) {
+      int index = id & (counts.length - 1);
+      return counts[index];
+    }
+
+    /**
+     * Returns the ids that occur at least once, most common first.
+     */
+    public int[] getIds() {
+      int n = 0;
+      long[] sortable = new long[counts.length];
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          // sort by count, then by index, in one primitive sort
+          sortable[n++] = ((long) counts[i] << 32) | i;
+        }
+      }
+      Arrays.sort(sortable, 0, n);
+
+      int[] ids = new int[n];
+      for (int i = 0; i < n; i++) {
+        int index = (int) sortable[n - 1 - i];
+        ids[i] = signed ? (short) index : index;
+      }
+      return ids;
+    }
+
+    public long getTotal() {
+      long total = 0;
+      for (int count : counts) {
+        total += count;
+      }
+      return total;
+    }
+  }
+
+  public final Histogram materials;
+  public final Histogram biomes;
+  public final Histogram liquids;
+  public final Histogram dungeons;
+
+  private WorldStatistics(
+      Histogram materials, Histogram biomes, Histogram liquids, Histogram dungeons) {
+    this.materials = materials;
+    this.biomes = biomes;
+    this.liquids = liquids;
+    this.dungeons = dungeons;
+  }
+
+  private static class Counts {
+    final int[] materials = new int[1 << 16];
+    final int[] biomes = new int[1 << 8];
+    final int[] liquids = new int[1 << 8];
+    final int[] dungeons = new int[1 << 16];
+
+    void add(Counts other) {
+      add(materials, other.materials);
+      add(biomes, other.biomes);
+      add(liquids, other.liquids);
+      add(dungeons, other.dungeons);
+    }
+
+    private static void add(int[] to, int[] from) {
+      for (int i = 0; i < to.length; i++) {
+        to[i] += from[i];
+      }
+    }
+  }
+
+  @SuppressWarnings("serial")
+  private static class CountTask extends RecursiveTask<Counts> {
+
+    private final WorldTiles tiles;
+    // rows of regions
+    private final int start, end;
+    private final int rowsPerTask;
+
+    CountTask(WorldTiles tiles, int start, int end, int rowsPerTask) {
+      this.tiles = tiles;
+      this.start = start;
+      this.end = end;
+      this.rowsPerTask = rowsPerTask;
+    }
+
+    @Override
+    protected Counts compute() {
+      if (end - start > rowsPerTask) {
+        int mid = (start + end) >>> 1;
+        CountTask top = new CountTask(tiles, mid, end, rowsPerTask);
+        top.fork();
+        Counts counts = new CountTask(tiles, start, mid, rowsPerTask).compute();
+        counts.add(top.join());
+        return counts;
+      }
+
+      Counts counts = new Counts();
+      int from = start * 32 * tiles.getWidth();
+      int to = Math.min(end * 32, tiles.getHeight()) * tiles.getWidth();
+      short[] materials = tiles.tiles;
+      byte[] biomes = tiles.biomes;
+      byte[] liquids = tiles.liquids;
+      short[] dungeons = tiles.dungeons;
+      for (int i = from; i < to; i++) {
+        int material = materials[i];
+        counts.materials[material & 0xFFFF]++;
+        if (material == WorldTiles.NULL_MATERIAL) {
+          // only the material layer is meaningful for tiles that were never generated
+          continue;
+        }
+        counts.biomes[biomes[i] & 0xFF]++;
+        counts.liquids[liquids[i] & 0xFF]++;
+        counts.dungeons[dungeons[i] & 0xFFFF]++;
+      }
+      return counts;
+    }
+  }
+}
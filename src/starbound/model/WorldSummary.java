@@ -0,0 +1,77 @@
+package starbound.model;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The parts of a world that are shown in world listings, which can be cached without keeping the
+ * world itself in memory.
+ */
+public class WorldSummary {
+
+  public static WorldSummary create(File file) throws IOException {
+    // Read the size and time before the contents, so that a concurrent save makes the summary
+    // look stale rather than fresh.
+    long size = file.length();
+    long lastModified = file.lastModified();
+
+    // opened rather than loaded, so only the metadata and the starts of the entity regions are
+    // read
+    try (World world = World.open(file)) {
+      WorldId id = null;
+      if (world.metadata.getByPath(World.CELESTIAL_COORDINATE) != null) {
+        id = world.getId();
+      }
+      return new WorldSummary(
+          file,
+          size,
+          lastModified,
+          world.getName(),
+          world.getType(),
+          id,
+          world.width,
+          world.height,
+          world.getPlayerStart(),
+          world.countEntities());
+    }
+  }
+
+  public final File file;
+  public final long size;
+  public final long lastModified;
+
+  public final String name;
+  public final String type;
+  /** The world's celestial id, or null for worlds that have none, such as ships. */
+  public final WorldId id;
+  public final int width, height;
+  public final Point playerStart;
+  public final int entityCount;
+
+  WorldSummary(File file, long size, long lastModified, String name, String type, WorldId id,
+      int width, int height, Point playerStart, int entityCount) {
+    this.file = file;
+    this.size = size;
+    this.lastModified = lastModified;
+    this.name = name;
+    this.type = type;
+    this.id = id;
+    this.width = width;
+    this.height = height;
+    this.playerStart = playerStart;
+    this.entityCount = entityCount;
+  }
+
+  /**
+   * Returns whether the file has not changed since this summary was created.
+   */
+  public boolean isCurrent() {
+    return file.length() == size && file.lastModified() == lastModified;
+  }
+
+  @Override
+  public String toString() {
+    return name + " (" + type + ", " + width + " x " + height + ")";
+  }
+}
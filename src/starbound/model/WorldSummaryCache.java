@@ -0,0 +1,171 @@
+package starbound.model;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import starbound.io.StarboundFiles;
+
+/**
+ * Summaries of world files, persisted between runs. A summary is reused as long as its world
+ * file has the same size and modification time, so only worlds that changed are parsed again.
+ */
+public class WorldSummaryCache {
+
+  public static final File DEFAULT_FILE = new File("worlds.cache");
+
+  private static final int MAGIC = 'S' << 24 | 'B' << 16 | 'W' << 8 | 'C';
+  private static final int VERSION = 1;
+
+  /**
+   * Loads the cache from the given file. A missing, outdated or unreadable cache file results in
+   * an empty cache.
+   */
+  public static WorldSummaryCache load(File cacheFile) {
+    WorldSummaryCache cache = new WorldSummaryCache(cacheFile);
+    if (!cacheFile.exists()) {
+      return cache;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return cache;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        WorldSummary summary = read(in);
+        cache.summaries.put(summary.file.getAbsolutePath(), summary);
+      }
+    } catch (IOException e) {
+      System.out.println("Could not read world cache " + cacheFile + ": " + e);
+      cache.summaries.clear();
+    }
+    return cache;
+  }
+
+  private final File cacheFile;
+  private final Map<String, WorldSummary> summaries = new LinkedHashMap<>();
+  private boolean dirty;
+
+  private WorldSummaryCache(File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * Returns the summary of the given world file, parsing the world only if it isn't cached or
+   * has changed since it was cached.
+   */
+  public synchronized WorldSummary get(File worldFile) throws IOException {
+    String key = worldFile.getAbsolutePath();
+    WorldSummary summary = summaries.get(key);
+    if (summary == null || !summary.isCurrent()) {
+      summary = WorldSummary.create(worldFile);
+      summaries.put(key, summary);
+      dirty = true;
+    }
+    return summary;
+  }
+
+  public List<WorldSummary> get(List<File> worldFiles) throws IOException {
+    List<WorldSummary> list = new ArrayList<>(worldFiles.size());
+    for (File worldFile : worldFiles) {
+      list.add(get(worldFile));
+    }
+    return list;
+  }
+
+  /**
+   * Returns the summaries of all of the celestial worlds in the universe, by id.
+   */
+  public Map<WorldId, WorldSummary> getWorlds(StarboundFiles starboundFiles) throws IOException {
+    Map<WorldId, WorldSummary> worlds = new HashMap<>();
+    for (WorldSummary summary : get(starboundFiles.findWorldFiles())) {
+      if (summary.id != null) {
+        worlds.put(summary.id, summary);
+      }
+    }
+    return worlds;
+  }
+
+  /**
+   * Writes the cache back to its file if anything changed, dropping worlds that no longer exist.
+   * The cache is written to a temporary file next to it first and then moved over it, so that a
+   * run that is stopped while writing doesn't leave a partial cache behind.
+   */
+  public synchronized void save() throws IOException {
+    Iterator<WorldSummary> it = summaries.values().iterator();
+    while (it.hasNext()) {
+      if (!it.next().file.exists()) {
+        it.remove();
+        dirty = true;
+      }
+    }
+    if (!dirty) {
+      return;
+    }
+
+    File tempFile = new File(cacheFile.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(summaries.size());
+        for (WorldSummary summary : summaries.values()) {
+          write(out, summary);
+        }
+      }
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+    dirty = false;
+  }
+
+  private static WorldSummary read(DataInputStream in) throws IOException {
+    File file = new File(in.readUTF());
+    long size = in.readLong();
+    long lastModified = in.readLong();
+    String name = in.readUTF();
+    String type = in.readUTF();
+    WorldId id = in.readBoolean() ? WorldId.fromId(in.readUTF()) : null;
+    int width = in.readInt();
+    int height = in.readInt();
+    Point playerStart = new Point(in.readInt(), in.readInt());
+    int entityCount = in.readInt();
+    return new WorldSummary(
+        file, size, lastModified, name, type, id, width, height, playerStart, entityCount);
+  }
+
+  private static void write(DataOutputStream out, WorldSummary summary) throws IOException {
+    out.writeUTF(summary.file.getAbsolutePath());
+    out.writeLong(summary.size);
+    out.writeLong(summary.lastModified);
+    out.writeUTF(summary.name);
+    out.writeUTF(summary.type);
+    out.writeBoolean(summary.id != null);
+    if (summary.id != null) {
+      out.writeUTF(summary.id.toString());
+    }
+    out.writeInt(summary.width);
+    out.writeInt(summary.height);
+    out.writeInt(summary.playerStart.x);
+    out.writeInt(summary.playerStart.y);
+    out.writeInt(summary.entityCount);
+  }
+}
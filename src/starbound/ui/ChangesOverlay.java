@@ -0,0 +1,47 @@
+package starbound.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import starbound.model.World.WorldTiles;
+import starbound.model.WorldDiff;
+import starbound.ui.WorldPanel.Overlay;
+
+/**
+ * Marks the tiles that changed since the previous save: dug out, placed, replaced or flooded.
+ * Areas that were generated since the previous save are not marked.
+ */
+class ChangesOverlay implements Overlay {
+
+  private static final Color REMOVED_COLOR = Color.RED;
+  private static final Color PLACED_COLOR = Color.GREEN;
+  private static final Color REPLACED_COLOR = Color.YELLOW;
+  private static final Color LIQUID_COLOR = Color.CYAN;
+
+  private final WorldDiff diff;
+
+  ChangesOverlay(WorldDiff diff) {
+    this.diff = diff;
+  }
+
+  @Override
+  public void paint(Graphics2D g, int worldHeight, float zoom) {
+    for (int i = 0; i < diff.size(); i++) {
+      int oldMaterial = diff.getOldMaterial(i);
+      int newMaterial = diff.getNewMaterial(i);
+      if (oldMaterial == WorldTiles.NULL_MATERIAL) {
+        continue;
+      }
+      if (oldMaterial == newMaterial) {
+        g.setColor(LIQUID_COLOR);
+      } else if (newMaterial < 0) {
+        g.setColor(REMOVED_COLOR);
+      } else if (oldMaterial < 0) {
+        g.setColor(PLACED_COLOR);
+      } else {
+        g.setColor(REPLACED_COLOR);
+      }
+      g.fillRect(diff.getX(i), worldHeight - diff.getY(i) - 1, 1, 1);
+    }
+  }
+}
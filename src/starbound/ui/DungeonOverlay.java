@@ -0,0 +1,38 @@
+package starbound.ui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import starbound.model.DungeonIndex.Dungeon;
+import starbound.model.DungeonIndex.Extent;
+import starbound.ui.WorldPanel.Overlay;
+
+/**
+ * Outlines the parts of a dungeon, one box per region it covers.
+ */
+class DungeonOverlay implements Overlay {
+
+  private static final float LINE_PIXELS = 1f;
+
+  private final Dungeon dungeon;
+  private final Color color;
+
+  DungeonOverlay(Dungeon dungeon, Color color) {
+    this.dungeon = dungeon;
+    this.color = color;
+  }
+
+  @Override
+  public void paint(Graphics2D g, int worldHeight, float zoom) {
+    g.setColor(color);
+    g.setStroke(new BasicStroke(LINE_PIXELS / zoom));
+    for (Extent extent : dungeon.extents) {
+      g.drawRect(
+          extent.minX,
+          worldHeight - extent.maxY - 1,
+          extent.maxX - extent.minX + 1,
+          extent.maxY - extent.minY + 1);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package starbound.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import starbound.model.Liquids;
+import starbound.model.World.WorldTiles;
+import starbound.ui.WorldPanel.Overlay;
+
+/**
+ * Tints the tiles that hold liquid with the liquid's color, more opaque the fuller the tile is.
+ * The tint is drawn into an image once, so painting doesn't go through the tiles.
+ */
+class LiquidOverlay implements Overlay {
+
+  // Alpha of a full tile, so the terrain stays recognizable under the liquid
+  private static final int FULL_ALPHA = 200;
+  private static final int MIN_ALPHA = 60;
+
+  private final BufferedImage image;
+
+  LiquidOverlay(WorldTiles tiles, Liquids liquids) {
+    image = new BufferedImage(tiles.getWidth(), tiles.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < tiles.getHeight(); y++) {
+      for (int x = 0; x < tiles.getWidth(); x++) {
+        int liquid = tiles.getLiquid(x, y);
+        if (liquid == 0) {
+          continue;
+        }
+        Color color = liquids.getColor(liquid);
+        float level = Math.min(1, tiles.getLiquidLevel(x, y));
+        int alpha = Math.max(MIN_ALPHA, (int) (FULL_ALPHA * level));
+        image.setRGB(x, tiles.getHeight() - y - 1, (alpha << 24) | (color.getRGB() & 0xFFFFFF));
+      }
+    }
+  }
+
+  @Override
+  public void paint(Graphics2D g, int worldHeight, float zoom) {
+    if (worldHeight != image.getHeight()) {
+      return;
+    }
+    g.drawImage(image, 0, 0, null);
+  }
+}
@@ -0,0 +1,50 @@
+package starbound.ui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+
+import starbound.model.Pathfinder.Route;
+import starbound.model.WalkabilityGrid;
+import starbound.ui.WorldPanel.Overlay;
+
+/**
+ * Draws a route as a line through the middle of the player's body at each step.
+ */
+class RouteOverlay implements Overlay {
+
+  private static final float LINE_PIXELS = 2f;
+
+  private final Path2D.Float path = new Path2D.Float();
+  private final Color color;
+  private final int worldHeight;
+
+  RouteOverlay(Route route, Color color, int worldHeight) {
+    this.color = color;
+    this.worldHeight = worldHeight;
+
+    float offsetX = WalkabilityGrid.PLAYER_WIDTH / 2f;
+    float offsetY = WalkabilityGrid.PLAYER_HEIGHT / 2f;
+    for (int i = 0; i < route.size(); i++) {
+      float x = route.getX(i) + offsetX;
+      float y = worldHeight - (route.getY(i) + offsetY);
+      // start a new line where the route wraps around the edge of the world
+      if (i == 0 || Math.abs(route.getX(i) - route.getX(i - 1)) > 1) {
+        path.moveTo(x, y);
+      } else {
+        path.lineTo(x, y);
+      }
+    }
+  }
+
+  @Override
+  public void paint(Graphics2D g, int worldHeight, float zoom) {
+    if (worldHeight != this.worldHeight) {
+      return;
+    }
+    g.setColor(color);
+    g.setStroke(new BasicStroke(LINE_PIXELS / zoom));
+    g.draw(path);
+  }
+}
@@ -0,0 +1,41 @@
+package starbound.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import starbound.model.TileSearch.RegionMatches;
+import starbound.model.TileSearch.Matches;
+import starbound.ui.WorldPanel.Overlay;
+
+/**
+ * Marks the tiles found by a search.
+ */
+class TileHighlightOverlay implements Overlay {
+
+  // Matches are drawn at least this many pixels wide so single tiles stay visible zoomed out
+  private static final int MIN_MARKER_PIXELS = 3;
+
+  private final Matches matches;
+  private final Color color;
+
+  TileHighlightOverlay(Matches matches, Color color) {
+    this.matches = matches;
+    this.color = color;
+  }
+
+  @Override
+  public void paint(Graphics2D g, int worldHeight, float zoom) {
+    g.setColor(color);
+    int size = Math.max(1, (int) Math.ceil(MIN_MARKER_PIXELS / zoom));
+    int offset = (size - 1) / 2;
+    for (RegionMatches region : matches.regions) {
+      for (int i = 0; i < region.size(); i++) {
+        g.fillRect(
+            region.getX(i) - offset,
+            worldHeight - region.getY(i) - 1 - offset,
+            size,
+            size);
+      }
+    }
+  }
+}
@@ -15,6 +15,7 @@ import starbound.model.Materials;
 import starbound.model.Materials.Material;
 import starbound.model.World;
 import starbound.model.World.WorldTiles;
+import starbound.model.WorldDiff;
 
 public class WorldDrawer {
 
@@ -35,6 +36,13 @@ public class WorldDrawer {
   }
 
   public BufferedImage drawWorld(World world, ProgressWatcher watch) {
+    return drawWorld(world, drawTiles(world, watch), watch);
+  }
+
+  /**
+   * Draws the foreground material of every tile, without lighting or entities.
+   */
+  public BufferedImage drawTiles(World world, ProgressWatcher watch) {
 
     watch.start("Loading tiles...");
     WorldTiles tiles = world.getTileForgroundMaterial();    
@@ -47,40 +55,76 @@ public class WorldDrawer {
     imageGraphics.setColor(Color.DARK_GRAY);
     imageGraphics.fillRect(0, 0, image.getWidth(), image.getHeight());
 
-    final int torchLightRadius = 12;
-    final int surfaceLightPenetration = 8;
-
     watch.start("Generating world image...");
     for (int x = 0; x < tiles.getWidth(); x++) {
       for (int y = 0; y < tiles.getHeight(); y++) {
+        drawTile(image, tiles, x, y);
+      }
+    }
+    watch.stop();
 
-        int materialId = tiles.getTile(x, y);
-        Color color;
-        if (materialId == -2) {
-          // Not generated or out of world bounds
-          continue;
-        } else if (materialId >= 0) {
-
-          Material material = materials.get(materialId);
-          if (material == null) {
-            System.out.println("no material for " + materialId);
-            color = DEFAULT_MATERIAL_COLOR;
-          } else if (material.color == null) {
-            color = PLATFORM_COLOR;
-          } else {
-            color = material.color;
-          }
-
-        } else {
-          // No material
-          color = EMPTY_COLOR;
-        }
+    return image;
+  }
 
-        image.setRGB(x, tiles.getHeight() - y - 1, color.getRGB());
-      }
+  /**
+   * Returns a copy of the tiles image of an older save of the world with only the changed tiles
+   * drawn again. The world's tiles must already include the changes.
+   */
+  public BufferedImage redrawTiles(
+      BufferedImage tilesImage, World world, WorldDiff diff, ProgressWatcher watch) {
+
+    watch.start("Loading changed tiles...");
+    WorldTiles tiles = world.getTileForgroundMaterial();
+    watch.stop();
+
+    watch.start("Redrawing " + diff.size() + " changed tiles...");
+    BufferedImage image = copy(tilesImage);
+    for (int i = 0; i < diff.size(); i++) {
+      drawTile(image, tiles, diff.getX(i), diff.getY(i));
     }
     watch.stop();
 
+    return image;
+  }
+
+  private void drawTile(BufferedImage image, WorldTiles tiles, int x, int y) {
+    int materialId = tiles.getTile(x, y);
+    Color color;
+    if (materialId == -2) {
+      // Not generated or out of world bounds
+      return;
+    } else if (materialId >= 0) {
+
+      Material material = materials.get(materialId);
+      if (material == null) {
+        System.out.println("no material for " + materialId);
+        color = DEFAULT_MATERIAL_COLOR;
+      } else if (material.color == null) {
+        color = PLATFORM_COLOR;
+      } else {
+        color = material.color;
+      }
+
+    } else {
+      // No material
+      color = EMPTY_COLOR;
+    }
+
+    image.setRGB(x, tiles.getHeight() - y - 1, color.getRGB());
+  }
+
+  /**
+   * Draws lighting and entities over a copy of the image from {@link #drawTiles}.
+   */
+  public BufferedImage drawWorld(World world, BufferedImage tilesImage, ProgressWatcher watch) {
+
+    WorldTiles tiles = world.getTileForgroundMaterial();
+    BufferedImage image = copy(tilesImage);
+    Graphics2D imageGraphics = (Graphics2D) image.getGraphics();
+
+    final int torchLightRadius = 12;
+    final int surfaceLightPenetration = 8;
+
     List<VersionedJson> entities = world.getEntities();
     // Objects to draw that should be covered by the torch mask
     for (VersionedJson entity : entities) {
@@ -105,9 +149,9 @@ public class WorldDrawer {
       if (entity.identifier.equals("ObjectEntity")) {
         String name =  entity.data.getByKey("name").asString();
         if (name.equals("torch")) {
-          Sbon position = entity.data.getByKey("tilePosition");
-          int tileX = position.getByIndex(0).asInt();
-          int tileY = position.getByIndex(1).asInt();
+          long[] position = entity.data.getByKey("tilePosition").asLongArray();
+          int tileX = (int) position[0];
+          int tileY = (int) position[1];
 
           int imageX = tileX;
           int imageY = tiles.getHeight() - tileY - 1;
@@ -132,12 +176,9 @@ public class WorldDrawer {
     watch.start("Revealing sky...");
     // reveal the sky and some pixels below the surface
     for (int x = 0; x < tiles.getWidth(); x++) {
-      for (int y = tiles.getHeight() - 1; y >= 0; y--) {
-        int material = tiles.getTile(x, y);
-        if (material >= 0) {
-          maskGraphics.drawLine(x, 0, x, tiles.getHeight() - y - 2 + surfaceLightPenetration);
-          break;
-        }
+      int y = tiles.getSurface(x);
+      if (y != WorldTiles.NO_SURFACE) {
+        maskGraphics.drawLine(x, 0, x, tiles.getHeight() - y - 2 + surfaceLightPenetration);
       }
     }
     watch.stop();
@@ -151,7 +192,7 @@ public class WorldDrawer {
 
       if (entity.identifier.equals("ItemDropEntity")) {
 
-        Sbon content = entity.data.getByPath("item/content");
+        Sbon content = entity.data.getByPath(Entities.ITEM_CONTENT);
         String name = content.getByKey("name").asString();
         if (!IgnoredItems.isIgnored(name)) {
           drawEntity(imageGraphics, tiles, entity, DROPPED_ITEM_COLOR);
@@ -171,6 +212,12 @@ public class WorldDrawer {
     return image;
   }
   
+  private static BufferedImage copy(BufferedImage image) {
+    BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+    image.copyData(copy.getRaster());
+    return copy;
+  }
+
   private static void drawTrippleCircle(Graphics2D g, int cx, int cy, int r, int w) {
     for (int i = -1; i < 2; i++) {
       g.fillOval(
@@ -184,16 +231,18 @@ public class WorldDrawer {
   private static void drawEntity(
       Graphics2D imageGraphics, WorldTiles tiles, VersionedJson entity, Color color) {
 
-    Sbon position;
+    int x, y;
     if (entity.data.containsKey("position")) {
-      position = entity.data.getByKey("position");
+      double[] position = entity.data.getByKey("position").asDoubleArray();
+      x = (int) position[0];
+      y = (int) position[1];
     } else if (entity.data.containsKey("tilePosition")) {
-      position = entity.data.getByKey("tilePosition");
+      long[] position = entity.data.getByKey("tilePosition").asLongArray();
+      x = (int) position[0];
+      y = (int) position[1];
     } else {
       throw new IllegalStateException();
     }
-    int x = position.getByIndex(0).asInt();
-    int y = position.getByIndex(1).asInt();
     imageGraphics.setColor(color);
     imageGraphics.fillRect(x - 1, tiles.getHeight() - y - 2, 3, 3);
   }
@@ -2,10 +2,13 @@ package starbound.ui;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.JComponent;
 
@@ -14,6 +17,17 @@ class WorldPanel extends JComponent {
   public interface WorldClickListener {
     void onClick(int x, int y);
   }
+
+  /**
+   * Something drawn over the world image, such as highlighted tiles.
+   */
+  public interface Overlay {
+    /**
+     * Paints the overlay. The graphics are scaled so that one unit is one tile, and the image
+     * row of a tile is {@code worldHeight - y - 1}. Called once per drawn copy of the world.
+     */
+    void paint(Graphics2D g, int worldHeight, float zoom);
+  }
   
   private BufferedImage worldImage;
 
@@ -28,6 +42,7 @@ class WorldPanel extends JComponent {
   private int playerX, playerY;
 
   private WorldClickListener worldClickListener;
+  private final Map<String, Overlay> overlays = new LinkedHashMap<>();
   
   public WorldPanel() {
 
@@ -113,9 +128,12 @@ class WorldPanel extends JComponent {
     int scaledHeight = (int) (imageHeight * zoom);
 
     g.drawImage(worldImage, x, y, scaledWidth, scaledHeight, null);
+    paintOverlays(g, x, y, imageHeight);
     if (drawWrappedWorld) {
       g.drawImage(worldImage, x - scaledWidth, y, scaledWidth, scaledHeight, null);
       g.drawImage(worldImage, x + scaledWidth, y, scaledWidth, scaledHeight, null);
+      paintOverlays(g, x - scaledWidth, y, imageHeight);
+      paintOverlays(g, x + scaledWidth, y, imageHeight);
     }
 
     if (trackingPlayer) {
@@ -129,6 +147,28 @@ class WorldPanel extends JComponent {
     }
   }
 
+  private void paintOverlays(Graphics g, int x, int y, int imageHeight) {
+    for (Overlay overlay : overlays.values()) {
+      Graphics2D overlayGraphics = (Graphics2D) g.create();
+      overlayGraphics.translate(x, y);
+      overlayGraphics.scale(zoom, zoom);
+      overlay.paint(overlayGraphics, imageHeight, zoom);
+      overlayGraphics.dispose();
+    }
+  }
+
+  /**
+   * Sets the overlay with the given name, replacing any previous one. A null overlay removes it.
+   */
+  public void setOverlay(String name, Overlay overlay) {
+    if (overlay == null) {
+      overlays.remove(name);
+    } else {
+      overlays.put(name, overlay);
+    }
+    repaint();
+  }
+
   public void setViewCenter(int tileX, int tileY) {
     viewX = tileX;
     viewY =  tileY;
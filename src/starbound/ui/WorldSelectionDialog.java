@@ -23,7 +23,8 @@ import javax.swing.SortOrder;
 import javax.swing.table.TableModel;
 import javax.swing.table.TableRowSorter;
 
-import starbound.model.World;
+import starbound.model.WorldSummary;
+import starbound.model.WorldSummaryCache;
 
 public class WorldSelectionDialog {
 
@@ -34,10 +35,10 @@ public class WorldSelectionDialog {
   private final JDialog dialog;
   private WorldSelectionListener worldSelectionListener;
 
-  public WorldSelectionDialog(JFrame parent, List<File> worldFiles)
-      throws IOException {
+  public WorldSelectionDialog(
+      JFrame parent, List<File> worldFiles, WorldSummaryCache worldSummaries) throws IOException {
     
-    JTable table = createTable(worldFiles);
+    JTable table = createTable(worldFiles, worldSummaries);
 
     table.addMouseListener(new MouseAdapter() {
       @Override
@@ -85,15 +86,21 @@ public class WorldSelectionDialog {
     dialog.setVisible(true);
   }
   
-  private static JTable createTable(List<File> worldFiles) throws IOException {
+  private static JTable createTable(List<File> worldFiles, WorldSummaryCache worldSummaries)
+      throws IOException {
 
     Object[][] tableData = new Object[worldFiles.size()][3];
     for (int i = 0; i < worldFiles.size(); i++) {
-      File worldFile = worldFiles.get(i);
-      World world = World.load(worldFile);
-      tableData[i][0] = world.getName();
-      tableData[i][1] = world.getType();
-      tableData[i][2] = new Date(worldFile.lastModified());
+      WorldSummary summary = worldSummaries.get(worldFiles.get(i));
+      tableData[i][0] = summary.name;
+      tableData[i][1] = summary.type;
+      tableData[i][2] = new Date(summary.lastModified);
+    }
+
+    try {
+      worldSummaries.save();
+    } catch (IOException e) {
+      System.out.println("Could not save world cache: " + e);
     }
 
     JTable table = new JTable(tableData, new Object[] {"Name", "Type", "Last Modified"}) {
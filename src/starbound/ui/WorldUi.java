@@ -1,6 +1,7 @@
 package starbound.ui;
 
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Dialog.ModalityType;
 import java.awt.Dimension;
 import java.awt.GraphicsDevice;
@@ -17,7 +18,6 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
@@ -42,11 +42,25 @@ import starbound.io.SBAsset6;
 import starbound.io.Sbon;
 import starbound.io.StarboundFiles;
 import starbound.io.VersionedJson;
+import starbound.model.Deposits;
+import starbound.model.Deposits.Deposit;
+import starbound.model.DungeonIndex;
+import starbound.model.DungeonIndex.Dungeon;
 import starbound.model.Entities;
+import starbound.model.Liquids;
 import starbound.model.Materials;
 import starbound.model.Materials.Material;
-import starbound.model.Player;
+import starbound.model.Pathfinder;
+import starbound.model.Pathfinder.Route;
+import starbound.model.PlayerRegistry;
+import starbound.model.TileSearch;
+import starbound.model.TileSearch.Matches;
+import starbound.model.TileSearch.TilePredicate;
 import starbound.model.World;
+import starbound.model.WalkabilityGrid;
+import starbound.model.World.WorldTiles;
+import starbound.model.WorldDiff;
+import starbound.model.WorldSummaryCache;
 import starbound.process.StarboundPlayerTracker;
 import starbound.process.StarboundPlayerTracker.PlayerTrackingCallback;
 import starbound.process.StarboundPlayerTracker.StarboundProcessScannerCallback;
@@ -60,27 +74,54 @@ import util.DirectoryWatcher.FileWatchListener;
 
 public class WorldUi {
 
+  private static final String FIND_OVERLAY = "find";
+  private static final Color FIND_COLOR = Color.ORANGE;
+  private static final String CHANGES_OVERLAY = "changes";
+  private static final String LIQUID_OVERLAY = "liquid";
+  private static final String DUNGEON_OVERLAY = "dungeon";
+  private static final Color DUNGEON_COLOR = Color.MAGENTA;
+  private static final String ROUTE_OVERLAY = "route";
+  private static final Color ROUTE_COLOR = Color.GREEN;
+  // The tracked position changes many times a second, so the route follows it at most this often
+  private static final int ROUTE_UPDATE_DELAY_MILLIS = 250;
+  // Most deposits to list, largest first
+  private static final int MAX_DEPOSITS = 30;
+
   private final JFrame frame;
   private final Box controlPanel;
   private final JButton trackPlayerButton, gotoFlagsButton, gotoChestButton, itemsButton,
-      reloadButton, resetZoomButton;
-  private final JCheckBox centerOnPlayerCheckbox, overlayModeCheckbox, drawWrappedWorld;
+      findButton, depositsButton, dungeonsButton, reloadButton, resetZoomButton;
+  private final JCheckBox centerOnPlayerCheckbox, overlayModeCheckbox, drawWrappedWorld,
+      showRouteCheckbox, showLiquidsCheckbox;
   private final WorldPanel worldPanel;
   private final JLabel infoLabel;
 
   private final StarboundFiles starboundFiles;
+  private final PlayerRegistry playerRegistry;
+  private final WorldSummaryCache worldSummaries;
   private final WorldDrawer worldDrawer;
   private final Materials materials;
+  private final Liquids liquids;
 
   private List<GameFlag> gameFlags;
   private List<Item> gameItems;
   private List<Chest> ownedChests;
   private World world;
+  // The tiles of the world without lighting or entities, to redraw the changes of a newer save
+  private BufferedImage tilesImage;
+  private String findQuery = "";
+  private TilePredicate findPredicate;
+  private List<Deposit> deposits = new ArrayList<>();
+  private Pathfinder pathfinder;
+  // Where the last selected item or chest is, and where the player was last tracked
+  private Point routeTarget;
+  private Point trackedPlayerLocation;
 
   private final StarboundPlayerTracker playerTracker;
   private final DirectoryWatcher directoryWatcher;
   private final Timer worldUpdateTimer;
   private TimerTask worldUpdateTask;
+  private final javax.swing.Timer routeUpdateTimer;
   
   private boolean inOverlayMode = false;
   private final Dimension previousWindowSize = new Dimension();
@@ -89,14 +130,17 @@ public class WorldUi {
   public WorldUi(StarboundFiles starboundFiles) {
 
     this.starboundFiles = starboundFiles;
+    this.playerRegistry = new PlayerRegistry(starboundFiles);
+    this.worldSummaries = WorldSummaryCache.load(WorldSummaryCache.DEFAULT_FILE);
 
     SBAsset6 assets;
     try {
-      assets = SBAsset6.load(starboundFiles.findAssets());
+      assets = SBAsset6.load(starboundFiles.findAssets(), SBAsset6.DEFAULT_INDEX_CACHE_FILE);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
     this.materials = Materials.create(assets);
+    this.liquids = Liquids.create(assets);
     this.worldDrawer = new WorldDrawer(materials);
 
     playerTracker = new StarboundPlayerTracker();
@@ -106,6 +150,13 @@ public class WorldUi {
       throw new RuntimeException(e);
     }
     worldUpdateTimer = new Timer("worldUpdateTimer", true);
+    routeUpdateTimer = new javax.swing.Timer(ROUTE_UPDATE_DELAY_MILLIS, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        updateRoute();
+      }
+    });
+    routeUpdateTimer.setRepeats(false);
 
     frame = new JFrame("Starbound Map");
     frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -143,9 +194,15 @@ public class WorldUi {
     worldPanel.setWorldClickListener(new WorldClickListener() {
       @Override
       public void onClick(int x, int y) {
-        int materialId = world.getTileForgroundMaterial().getTile(x, y);
-        Material material = materials.get(materialId);
-        System.out.println(material);
+        WorldTiles tiles = world.getTileForgroundMaterial();
+        Material material = materials.get(tiles.getTile(x, y));
+        Material mod = materials.getMod(tiles.getMod(x, y));
+        String liquid = "";
+        if (tiles.getLiquid(x, y) != 0) {
+          liquid = ", " + liquids.get(tiles.getLiquid(x, y)) + " at " + tiles.getLiquidLevel(x, y);
+        }
+        System.out.println((mod == null ? material : material + ", " + mod) + liquid
+            + ", " + tiles.getDepthBelowSurface(x, y) + " below surface");
       }
     });
     frame.add(worldPanel);
@@ -197,6 +254,25 @@ public class WorldUi {
     centerOnPlayerCheckbox.setSelected(true);
     controlPanel.add(centerOnPlayerCheckbox);
 
+    showRouteCheckbox = new JCheckBox("Show Route");
+    showRouteCheckbox.setSelected(true);
+    showRouteCheckbox.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        updateRoute();
+      }
+    });
+    controlPanel.add(showRouteCheckbox);
+
+    showLiquidsCheckbox = new JCheckBox("Show Liquids");
+    showLiquidsCheckbox.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        updateLiquids();
+      }
+    });
+    controlPanel.add(showLiquidsCheckbox);
+
     trackPlayerButton = new JButton("Track Player");
     trackPlayerButton.addActionListener(new ActionListener() {
       @Override
@@ -205,6 +281,8 @@ public class WorldUi {
           playerTracker.stop();
           trackPlayerButton.setText("Track Player");
           worldPanel.setTrackingPlayer(false);
+          trackedPlayerLocation = null;
+          updateRoute();
         } else {          
           trackPlayer();
         }
@@ -256,6 +334,7 @@ public class WorldUi {
             public void actionPerformed(ActionEvent e) {
               centerOnPlayerCheckbox.setSelected(false);
               worldPanel.setViewCenter(chest.x, chest.y);
+              setRouteTarget(new Point(chest.x, chest.y));
             }
           };
           for (Item item : chest.items) {
@@ -283,6 +362,7 @@ public class WorldUi {
             if (item != null) {
               centerOnPlayerCheckbox.setSelected(false);
               worldPanel.setViewCenter(item.x, item.y);
+              setRouteTarget(new Point(item.x, item.y));
             }
           }
         });
@@ -290,6 +370,75 @@ public class WorldUi {
       }
     });
     controlPanel.add(itemsButton);
+
+    findButton = new JButton("Find...");
+    findButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        Object query = JOptionPane.showInputDialog(
+            frame,
+            "Materials or ores to highlight, separated by commas (empty to clear):",
+            "Find",
+            JOptionPane.PLAIN_MESSAGE,
+            null,
+            null,
+            findQuery);
+        if (query != null) {
+          find(query.toString().trim());
+        }
+      }
+    });
+    controlPanel.add(findButton);
+
+    depositsButton = new JButton("Deposits...");
+    depositsButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        JPopupMenu menu = new JPopupMenu();
+        if (deposits.isEmpty()) {
+          JMenuItem item = new JMenuItem("Use Find... to search for deposits");
+          item.setEnabled(false);
+          menu.add(item);
+        }
+        for (Deposit deposit : deposits.subList(0, Math.min(deposits.size(), MAX_DEPOSITS))) {
+          menu.add(new JMenuItem(new AbstractAction(deposit.toString()) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+              centerOnPlayerCheckbox.setSelected(false);
+              worldPanel.setViewCenter((int) deposit.centerX, (int) deposit.centerY);
+            }
+          }));
+        }
+        menu.show(depositsButton, 0, depositsButton.getHeight());
+      }
+    });
+    controlPanel.add(depositsButton);
+
+    dungeonsButton = new JButton("Dungeons...");
+    dungeonsButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        JPopupMenu menu = new JPopupMenu();
+        DungeonIndex dungeons = world.getTileForgroundMaterial().getDungeonIndex();
+        if (dungeons.getDungeons().isEmpty()) {
+          JMenuItem item = new JMenuItem("No dungeons in this world");
+          item.setEnabled(false);
+          menu.add(item);
+        }
+        for (Dungeon dungeon : dungeons.getDungeons()) {
+          menu.add(new JMenuItem(new AbstractAction(dungeon.toString()) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+              centerOnPlayerCheckbox.setSelected(false);
+              worldPanel.setViewCenter(dungeon.getCenterX(), dungeon.getCenterY());
+              worldPanel.setOverlay(DUNGEON_OVERLAY, new DungeonOverlay(dungeon, DUNGEON_COLOR));
+            }
+          }));
+        }
+        menu.show(dungeonsButton, 0, dungeonsButton.getHeight());
+      }
+    });
+    controlPanel.add(dungeonsButton);
     
     resetZoomButton = new JButton("Reset Zoom");
     resetZoomButton.addActionListener(new ActionListener() {
@@ -331,10 +480,15 @@ public class WorldUi {
 
     boolean enableUi = worldFile != null || this.world != null;
     centerOnPlayerCheckbox.setEnabled(enableUi);
+    showRouteCheckbox.setEnabled(enableUi);
+    showLiquidsCheckbox.setEnabled(enableUi);
     trackPlayerButton.setEnabled(enableUi);
     gotoFlagsButton.setEnabled(enableUi);
     gotoChestButton.setEnabled(enableUi);
     itemsButton.setEnabled(enableUi);
+    findButton.setEnabled(enableUi);
+    depositsButton.setEnabled(enableUi);
+    dungeonsButton.setEnabled(enableUi);
     reloadButton.setEnabled(enableUi);
     resetZoomButton.setEnabled(enableUi);
 
@@ -374,13 +528,17 @@ public class WorldUi {
       }
     };
 
+    World previousWorld = world;
+    BufferedImage previousTilesImage = tilesImage;
     Thread thread = new Thread(new Runnable() {
       @Override
       public void run() {
 
         WorldLoadResult results;
         try {
-          results = loadWorld(worldFile, starboundFiles, worldDrawer, progressListener);
+          results = loadWorld(
+              worldFile, previousWorld, previousTilesImage, playerRegistry, worldDrawer,
+              progressListener);
         } catch (IOException e) {
           System.out.println("Could not load world: " + e);
           return;
@@ -412,31 +570,149 @@ public class WorldUi {
     gameFlags = results.gameFlags;
     gameItems = results.gameItems;
     world = results.world;
+    tilesImage = results.tilesImage;
     ownedChests = results.ownedChests;
 
     infoLabel.setText(world.getName() + ", " + world.getType() + ", " +
         world.width + " x " + world.height);
 
     worldPanel.setWorld(results.worldImage);
+    worldPanel.setOverlay(DUNGEON_OVERLAY, null);
+    worldPanel.setOverlay(
+        CHANGES_OVERLAY, results.diff == null ? null : new ChangesOverlay(results.diff));
+    updateFindHighlights();
+
+    pathfinder = null;
+    updateRoute();
+    updateLiquids();
+  }
+
+  private void updateLiquids() {
+    if (!showLiquidsCheckbox.isSelected() || world == null) {
+      worldPanel.setOverlay(LIQUID_OVERLAY, null);
+      return;
+    }
+    worldPanel.setOverlay(
+        LIQUID_OVERLAY, new LiquidOverlay(world.getTileForgroundMaterial(), liquids));
+  }
+
+  private void setRouteTarget(Point target) {
+    routeTarget = target;
+    updateRoute();
+  }
+
+  /**
+   * Draws the route from the tracked player, or the start of the world when the player isn't
+   * tracked, to the last selected item or chest.
+   */
+  private void updateRoute() {
+    if (!showRouteCheckbox.isSelected() || routeTarget == null || world == null) {
+      worldPanel.setOverlay(ROUTE_OVERLAY, null);
+      return;
+    }
+    if (pathfinder == null) {
+      pathfinder = new Pathfinder(WalkabilityGrid.create(world.getTileForgroundMaterial()));
+    }
+
+    Point from = trackedPlayerLocation != null ? trackedPlayerLocation : world.getPlayerStart();
+    Route route = pathfinder.findRoute(from.x, from.y, routeTarget.x, routeTarget.y);
+    if (route == null) {
+      System.out.println("No route from " + from + " to " + routeTarget);
+      worldPanel.setOverlay(ROUTE_OVERLAY, null);
+    } else {
+      worldPanel.setOverlay(ROUTE_OVERLAY, new RouteOverlay(route, ROUTE_COLOR, world.height));
+    }
+  }
+
+  /**
+   * Highlights every tile whose material or mod has one of the comma separated names.
+   */
+  private void find(String query) {
+    List<TilePredicate> predicates = new ArrayList<>();
+    List<Integer> materialIds = new ArrayList<>();
+    List<Integer> modIds = new ArrayList<>();
+    for (String name : query.split(",")) {
+      name = name.trim();
+      if (name.isEmpty()) {
+        continue;
+      }
+      Material material = materials.findMaterial(name);
+      Material mod = materials.findMod(name);
+      if (material == null && mod == null) {
+        JOptionPane.showMessageDialog(
+            frame, "No material or ore named " + name, "Error", JOptionPane.ERROR_MESSAGE);
+        return;
+      }
+      if (material != null) {
+        materialIds.add(material.id);
+      }
+      if (mod != null) {
+        modIds.add(mod.id);
+      }
+    }
+    if (!materialIds.isEmpty()) {
+      predicates.add(TileSearch.materials(toIntArray(materialIds)));
+    }
+    if (!modIds.isEmpty()) {
+      predicates.add(TileSearch.mods(toIntArray(modIds)));
+    }
+
+    findQuery = query;
+    if (predicates.isEmpty()) {
+      findPredicate = null;
+    } else {
+      findPredicate = TileSearch.anyOf(predicates.toArray(new TilePredicate[predicates.size()]));
+    }
+    updateFindHighlights();
+  }
+
+  private void updateFindHighlights() {
+    if (findPredicate == null || world == null) {
+      worldPanel.setOverlay(FIND_OVERLAY, null);
+      deposits = new ArrayList<>();
+      return;
+    }
+    WorldTiles tiles = world.getTileForgroundMaterial();
+    Matches matches = TileSearch.find(tiles, findPredicate);
+    deposits = Deposits.find(tiles, findPredicate);
+    System.out.println(
+        "Found " + matches.size() + " tiles of " + findQuery + " in "
+        + deposits.size() + " deposits");
+    worldPanel.setOverlay(FIND_OVERLAY, new TileHighlightOverlay(matches, FIND_COLOR));
+  }
+
+  private static int[] toIntArray(List<Integer> values) {
+    int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i);
+    }
+    return array;
   }
   
   private static class WorldLoadResult {
 
     final World world;
+    final BufferedImage tilesImage;
     final BufferedImage worldImage;
+    // Changes since the previously shown save of the same world, null if there wasn't one
+    final WorldDiff diff;
     final List<GameFlag> gameFlags;
     final List<Item> gameItems;
     final List<Chest> ownedChests;
 
     public WorldLoadResult(
         World world,
+        BufferedImage tilesImage,
         BufferedImage worldImage,
+        WorldDiff diff,
         List<GameFlag> gameFlags,
         List<Item> gameItems,
         List<Chest> ownedChests) {
 
       this.world = world;
+      this.tilesImage = tilesImage;
       this.worldImage = worldImage;
+      this.diff = diff;
       this.gameFlags = gameFlags;
       this.gameItems = gameItems;
       this.ownedChests = ownedChests;
@@ -445,26 +721,42 @@ public class WorldUi {
   
   private static WorldLoadResult loadWorld(
       File worldFile,
-      StarboundFiles starboundFiles,
+      World previousWorld,
+      BufferedImage previousTilesImage,
+      PlayerRegistry playerRegistry,
       WorldDrawer worldDrawer,
       ProgressListener progressListener) throws IOException {
 
     ProgressWatcher watch = new ProgressWatcher(progressListener);
 
-    watch.start("Loading players...");
-    List<Player> players = Player.loadPlayers(starboundFiles);
-
-    Map<String, Map<String, String>> playerIdsToBookmarks = new HashMap<>();
-    for (Player player : players) {
-      playerIdsToBookmarks.put(player.id, player.getBookmarks());
+    // usually no player changed since the last load, and the players are already in memory
+    boolean loadPlayers = playerRegistry.needsRefresh();
+    if (loadPlayers) {
+      watch.start("Loading players...");
+    }
+    Map<String, Map<String, String>> playerIdsToBookmarks = playerRegistry.getBookmarks();
+    if (loadPlayers) {
+      watch.stop();
     }
-    watch.stop();
     
     watch.start("Loading world...");
     World world = World.load(worldFile);
     watch.stop();
 
-    BufferedImage worldImage = worldDrawer.drawWorld(world, watch);
+    WorldDiff diff = null;
+    BufferedImage tilesImage;
+    if (previousWorld != null && previousWorld.file.equals(worldFile)
+        && previousWorld.width == world.width && previousWorld.height == world.height) {
+      // a newer save of the shown world, so only the changed tiles need to be drawn again
+      watch.start("Comparing with previous save...");
+      diff = WorldDiff.compare(previousWorld, world);
+      world.reuseTiles(previousWorld, diff);
+      watch.stop();
+      tilesImage = worldDrawer.redrawTiles(previousTilesImage, world, diff, watch);
+    } else {
+      tilesImage = worldDrawer.drawTiles(world, watch);
+    }
+    BufferedImage worldImage = worldDrawer.drawWorld(world, tilesImage, watch);
 
     List<GameFlag> gameFlags = new ArrayList<>();
     List<Item> gameItems = new ArrayList<>();
@@ -477,11 +769,11 @@ public class WorldUi {
         if (name.contains("flag")) {
 
           String flagUniqueId = entity.data.getByKey("uniqueId").asString();
-          String ownerId = entity.data.getByPath("parameters/owner").asString();
+          String ownerId = entity.data.getByPath(Entities.PARAMETERS_OWNER).asString();
           String flagName = playerIdsToBookmarks.get(ownerId).get(flagUniqueId);
-          Sbon position = entity.data.getByKey("tilePosition");
-          int x = position.getByIndex(0).asInt();
-          int y = position.getByIndex(1).asInt();
+          long[] position = entity.data.getByKey("tilePosition").asLongArray();
+          int x = (int) position[0];
+          int y = (int) position[1];
           gameFlags.add(new GameFlag(name, flagName, x, y));
 
         } else if (Entities.isOwnedChest(entity)) {
@@ -495,22 +787,22 @@ public class WorldUi {
             }
           }
 
-          Sbon position = entity.data.getByKey("tilePosition");
-          int x = position.getByIndex(0).asInt();
-          int y = position.getByIndex(1).asInt();
+          long[] position = entity.data.getByKey("tilePosition").asLongArray();
+          int x = (int) position[0];
+          int y = (int) position[1];
           ownedChests.add(new Chest(name, items, x, y));
         }
 
       } else if (entity.identifier.equals("ItemDropEntity")) {
 
-        Sbon content = entity.data.getByPath("item/content");
+        Sbon content = entity.data.getByPath(Entities.ITEM_CONTENT);
         String name = content.getByKey("name").asString();
         if (!IgnoredItems.isIgnored(name)) {
           
           int quantity = content.getByKey("count").asInt();
-          Sbon position = entity.data.getByKey("position");
-          int x = position.getByIndex(0).asInt();
-          int y = position.getByIndex(1).asInt();
+          double[] position = entity.data.getByKey("position").asDoubleArray();
+          int x = (int) position[0];
+          int y = (int) position[1];
           
           gameItems.add(new Item(name, quantity, x, y));
         }
@@ -518,7 +810,8 @@ public class WorldUi {
     }
     Collections.sort(gameItems);
 
-    return new WorldLoadResult(world, worldImage, gameFlags, gameItems, ownedChests);
+    return new WorldLoadResult(
+        world, tilesImage, worldImage, diff, gameFlags, gameItems, ownedChests);
   }
 
   public void selectWorld() {
@@ -531,7 +824,7 @@ public class WorldUi {
 
     WorldSelectionDialog worldSelectionDialog;
     try {
-      worldSelectionDialog = new WorldSelectionDialog(frame, worldFiles);
+      worldSelectionDialog = new WorldSelectionDialog(frame, worldFiles, worldSummaries);
     } catch (IOException e) {
       System.out.println("Could not select world: " + e);
       return;
@@ -547,6 +840,7 @@ public class WorldUi {
         if (worldFile != null) {
           try {
             directoryWatcher.watchFile(worldFile.toPath(), new FileWatcher());
+            playerRegistry.watch(directoryWatcher);
           } catch (IOException e) {
             throw new RuntimeException(e);
           }
@@ -574,7 +868,8 @@ public class WorldUi {
 
           WorldLoadResult results;
           try {
-            results = loadWorld(world.file, starboundFiles, worldDrawer, null);
+            results = loadWorld(
+                world.file, world, tilesImage, playerRegistry, worldDrawer, null);
           } catch (IOException e) {
             System.out.println("Could not load world: " + e);
             return;
@@ -647,6 +942,14 @@ public class WorldUi {
               return;
             }
             worldPanel.setPlayerLocation((int)x, (int)y);
+            Point location = new Point((int)x, (int)y);
+            if (!location.equals(trackedPlayerLocation)) {
+              trackedPlayerLocation = location;
+              // the route is found again from the latest location once the timer fires
+              if (routeTarget != null && !routeUpdateTimer.isRunning()) {
+                routeUpdateTimer.start();
+              }
+            }
             if (centerOnPlayerCheckbox.isSelected()) {
               worldPanel.setViewCenter((int)x, (int)y);
             }
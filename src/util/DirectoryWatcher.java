@@ -90,21 +90,26 @@ public class DirectoryWatcher {
             continue;
           }
 
-          Path p = ((Path) key.watchable()).resolve(e.context());
-          FileWatchListener listener = listeners.get(p);
-          if (listener != null) {
-            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-              listener.onEvent(p, EventType.CREATED);
-            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-              listener.onEvent(p, EventType.MODIFIED);
-            }
-          }
+          Path directory = (Path) key.watchable();
+          Path p = directory.resolve(e.context());
+          EventType type = kind == StandardWatchEventKinds.ENTRY_CREATE
+              ? EventType.CREATED
+              : EventType.MODIFIED;
+          // listeners of the file itself, and of the whole directory
+          notifyListener(listeners.get(p), p, type);
+          notifyListener(listeners.get(directory), p, type);
         }
         key.reset();
       }
     }
   }
 
+  private static void notifyListener(FileWatchListener listener, Path p, EventType type) {
+    if (listener != null) {
+      listener.onEvent(p, type);
+    }
+  }
+
   public void start() {
     if (watcherThread == null) {
       running = true;